@@ -0,0 +1,109 @@
+#!/usr/bin/env bash
+#
+# Compares HTTP/1.1 and cleartext HTTP/2 (h2c) between the API gateway and the services on a local multi-instance
+# setup. INSTANCES instances of customers-service and visits-service are started once, then the gateway is started
+# twice, first with gateway.http-client.protocols=http11 and then with h2c,http11.
+#
+# For each mode, CONCURRENCY clients send REQUESTS requests through the gateway, alternating between
+#   /api/gateway/owners/{id}               - the gateway's own WebClients (customers-service then visits-service)
+#   /api/visit/owners/*/pets/{id}/visits   - a proxied route
+# and the script prints:
+#   connections - peak number of TCP connections from the gateway to the service instances (sampled with ss)
+#   pooled      - reactor_netty_connection_provider_total_connections reported by the gateway at the end of the run
+#   p50 / p99   - client-side latency percentiles
+#
+# Usage: scripts/benchmark/h2c.sh [instances] [requests] [concurrency]
+# The jars must be built and the config and discovery servers running, e.g. with scripts/run_all.sh after which the
+# single customers, visits and gateway instances it started are stopped by this script.
+
+set -o errexit
+set -o nounset
+set -o pipefail
+
+INSTANCES="${1:-2}"
+REQUESTS="${2:-5000}"
+CONCURRENCY="${3:-100}"
+GATEWAY_URL="http://localhost:8080"
+LOG_DIR="target/h2c"
+
+pkill -f 'spring-petclinic-(customers-service|visits-service|api-gateway)' || true
+mkdir -p "${LOG_DIR}"
+
+wait_healthy() {
+    local url="$1"
+    for _ in $(seq 90); do
+        curl --silent --fail "${url}/actuator/health" > /dev/null && return 0
+        sleep 2
+    done
+    echo "${url} did not start" >&2
+    exit 1
+}
+
+service_ports=()
+for i in $(seq "${INSTANCES}"); do
+    customers_port=$((8180 + i))
+    visits_port=$((8280 + i))
+    nohup java -jar spring-petclinic-customers-service/target/*.jar --server.port="${customers_port}" \
+        > "${LOG_DIR}/customers-service-${i}.log" 2>&1 &
+    RSOCKET_PORT=$((7000 + i)) nohup java -jar spring-petclinic-visits-service/target/*.jar \
+        --server.port="${visits_port}" > "${LOG_DIR}/visits-service-${i}.log" 2>&1 &
+    service_ports+=("${customers_port}" "${visits_port}")
+done
+for port in "${service_ports[@]}"; do
+    wait_healthy "http://localhost:${port}"
+done
+
+ss_filter=$(printf ' or dport = :%s' "${service_ports[@]}")
+ss_filter="( ${ss_filter# or } )"
+
+request() {
+    local n="$1"
+    local id=$(( n % 10 + 1 ))
+    if (( n % 2 == 0 )); then
+        curl --silent --output /dev/null --write-out '%{time_total}\n' "${GATEWAY_URL}/api/gateway/owners/${id}"
+    else
+        curl --silent --output /dev/null --write-out '%{time_total}\n' "${GATEWAY_URL}/api/visit/owners/*/pets/${id}/visits"
+    fi
+}
+export -f request
+export GATEWAY_URL
+
+measure() {
+    local mode="$1"
+    nohup java -jar spring-petclinic-api-gateway/target/*.jar --server.port=8080 \
+        --gateway.http-client.protocols="${mode}" > "${LOG_DIR}/api-gateway-${mode//,/-}.log" 2>&1 &
+    local gateway_pid=$!
+    wait_healthy "${GATEWAY_URL}"
+    # let every instance be discovered by the gateway's load balancer
+    sleep 35
+    seq 200 | xargs -P 20 -I{} bash -c 'request {}' > /dev/null
+
+    local peak_file="${LOG_DIR}/peak"
+    echo 0 > "${peak_file}"
+    (
+        while kill -0 "${gateway_pid}" 2> /dev/null; do
+            count=$(ss -Htn state established "${ss_filter}" | wc -l)
+            (( count > $(cat "${peak_file}") )) && echo "${count}" > "${peak_file}"
+            sleep 0.2
+        done
+    ) &
+    local sampler_pid=$!
+
+    seq "${REQUESTS}" | xargs -P "${CONCURRENCY}" -I{} bash -c 'request {}' | sort -n > "${LOG_DIR}/latencies"
+
+    local pooled
+    pooled=$(curl --silent "${GATEWAY_URL}/actuator/prometheus" \
+        | awk '/^reactor_netty_connection_provider_total_connections/ { sum += $2 } END { print sum + 0 }')
+    kill "${sampler_pid}" "${gateway_pid}"
+    wait "${gateway_pid}" 2> /dev/null || true
+
+    awk -v mode="${mode}" -v peak="$(cat "${peak_file}")" -v pooled="${pooled}" \
+        '{ t[NR] = $1 } END { printf "%-11s connections=%-5s pooled=%-5s p50=%.1fms p99=%.1fms\n", mode, peak, pooled, t[int(NR * 0.5)] * 1000, t[int(NR * 0.99)] * 1000 }' \
+        "${LOG_DIR}/latencies"
+}
+
+echo "${INSTANCES} instances of customers-service and visits-service, ${REQUESTS} requests, ${CONCURRENCY} concurrent"
+measure http11
+measure h2c,http11
+
+pkill -f 'spring-petclinic-(customers-service|visits-service)' || true
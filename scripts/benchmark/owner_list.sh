@@ -0,0 +1,38 @@
+#!/usr/bin/env bash
+#
+# Compares the owner list as downloaded through the API gateway:
+#   plain            - no compression, no validator
+#   gzip             - Accept-Encoding: gzip
+#   conditional      - gzip plus the ETag of the first response in If-None-Match (expects 304)
+# For each mode it prints the status, the bytes transferred and the median total time over ITERATIONS requests.
+#
+# Usage: scripts/benchmark/owner_list.sh [gateway-url] [iterations]
+# The apps must be running, e.g. with scripts/run_all.sh or docker compose.
+
+set -o errexit
+set -o nounset
+set -o pipefail
+
+GATEWAY_URL="${1:-http://localhost:8080}"
+ITERATIONS="${2:-50}"
+URL="${GATEWAY_URL}/api/customer/owners"
+
+etag=$(curl --silent --output /dev/null --dump-header - --header 'Accept-Encoding: gzip' "${URL}" \
+    | tr -d '\r' | awk 'tolower($1) == "etag:" { print $2 }')
+
+measure() {
+    local mode="$1"
+    shift
+    local status size
+    read -r status size < <(curl --silent --output /dev/null --write-out '%{http_code} %{size_download}\n' "$@" "${URL}")
+    local median
+    median=$(for _ in $(seq "${ITERATIONS}"); do
+        curl --silent --output /dev/null --write-out '%{time_total}\n' "$@" "${URL}"
+    done | sort -n | awk '{ t[NR] = $1 } END { print t[int((NR + 1) / 2)] }')
+    printf '%-12s status=%s bytes=%-8s median=%ss\n' "${mode}" "${status}" "${size}" "${median}"
+}
+
+echo "Owner list through ${URL}, ${ITERATIONS} requests per mode"
+measure plain --header 'Accept-Encoding: identity'
+measure gzip --header 'Accept-Encoding: gzip'
+measure conditional --header 'Accept-Encoding: gzip' --header "If-None-Match: ${etag}"
@@ -15,20 +15,56 @@
  */
 package org.springframework.samples.petclinic.api;
 
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
 import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
 import org.springframework.cloud.client.circuitbreaker.Customizer;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.samples.petclinic.api.application.RequestCoalescer;
+import org.springframework.samples.petclinic.api.application.Snapshot;
+import org.springframework.samples.petclinic.api.boundary.web.PrecompressedScriptHandler;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.dto.PetType;
+import org.springframework.samples.petclinic.api.dto.VetDetails;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.system.BulkheadProperties;
+import org.springframework.samples.petclinic.api.system.ConcurrencyLimitProperties;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import org.springframework.samples.petclinic.api.system.HttpClientPoolProperties;
+import org.springframework.samples.petclinic.api.system.LastKnownVisitsProperties;
+import org.springframework.samples.petclinic.api.system.LoadBalancerConfiguration;
+import org.springframework.samples.petclinic.api.system.LoadBalancingProperties;
+import org.springframework.samples.petclinic.api.system.OwnerDetailsCacheProperties;
+import org.springframework.samples.petclinic.api.system.OwnerPageProperties;
+import org.springframework.samples.petclinic.api.system.RateLimitProperties;
+import org.springframework.samples.petclinic.api.system.ServiceCodecProperties;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import org.springframework.samples.petclinic.api.system.VisitsBatchProperties;
+import org.springframework.samples.petclinic.api.system.VisitsTransportProperties;
+import org.springframework.samples.petclinic.web.SparseFieldsets;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.server.RequestPredicates;
@@ -36,14 +72,28 @@ import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
-import java.time.Duration;
-
 
 /**
  * @author Maciej Szarlinski
  */
 @EnableDiscoveryClient
 @SpringBootApplication
+@EnableConfigurationProperties({
+    OwnerDetailsCacheProperties.class,
+    VisitsBatchProperties.class,
+    HttpClientPoolProperties.class,
+    HedgingProperties.class,
+    ConcurrencyLimitProperties.class,
+    RateLimitProperties.class,
+    LoadBalancingProperties.class,
+    BulkheadProperties.class,
+    TimeoutProperties.class,
+    LastKnownVisitsProperties.class,
+    OwnerPageProperties.class,
+    ServiceCodecProperties.class,
+    VisitsTransportProperties.class
+})
+@LoadBalancerClients(defaultConfiguration = LoadBalancerConfiguration.class)
 public class ApiGatewayApplication {
 
     public static void main(String[] args) {
@@ -56,10 +106,47 @@ public class ApiGatewayApplication {
         return new RestTemplate();
     }
 
+    /**
+     * Decodes the JSON, Smile and CBOR answers of the services with the Spring Boot Jackson settings.
+     *
+     * @see ServiceCodecProperties
+     */
     @Bean
     @LoadBalanced
-    public WebClient.Builder loadBalancedWebClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder loadBalancedWebClientBuilder(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        ObjectMapper json = objectMapperBuilder.build();
+        ObjectMapper smile = objectMapperBuilder.factory(new SmileFactory()).build();
+        ObjectMapper cbor = objectMapperBuilder.factory(new CBORFactory()).build();
+        return WebClient.builder().codecs(codecs -> {
+            codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(json));
+            codecs.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile));
+            codecs.customCodecs().register(new Jackson2CborDecoder(cbor));
+        });
+    }
+
+    /**
+     * Concurrent lookups of the same owner share a single customers + visits round trip
+     */
+    @Bean
+    RequestCoalescer<Integer, Snapshot<OwnerDetails>> ownerDetailsCoalescer(MeterRegistry meterRegistry) {
+        return new RequestCoalescer<>("ownerDetails", meterRegistry);
+    }
+
+    /**
+     * Opts the DTOs in to {@code fields} selection.
+     */
+    @Bean
+    Module sparseFieldsetsModule() {
+        return SparseFieldsets.module(OwnerDetails.class, PetDetails.class, VisitDetails.class, PetType.class,
+            VetDetails.class, VetDetails.Specialty.class);
+    }
+
+    /**
+     * Lets the DTOs opted in to {@code fields} selection be written in full when no selection is made.
+     */
+    @Bean
+    Jackson2ObjectMapperBuilderCustomizer sparseFieldsetsCustomizer() {
+        return builder -> builder.filters(SparseFieldsets.serializeAll());
     }
 
     @Value("classpath:/static/index.html")
@@ -67,24 +154,29 @@ public class ApiGatewayApplication {
 
     /**
      * workaround solution for forwarding to index.html
+     * <p>
+     * The fingerprinted script bundle is served precompressed and immutable, while index.html, which points to
+     * the current bundle, is always revalidated.
      * @see <a href="https://github.com/spring-projects/spring-boot/issues/9785">#9785</a>
      */
     @Bean
     RouterFunction<?> routerFunction() {
-        RouterFunction router = RouterFunctions.resources("/**", new ClassPathResource("static/"))
-            .andRoute(RequestPredicates.GET("/"),
-                request -> ServerResponse.ok().contentType(MediaType.TEXT_HTML).bodyValue(indexHtml));
+        RouterFunction router = RouterFunctions.route(RequestPredicates.GET("/scripts/*.min.js"), new PrecompressedScriptHandler("static"))
+            .andRoute(RequestPredicates.GET("/").or(RequestPredicates.GET("/index.html")),
+                request -> ServerResponse.ok().contentType(MediaType.TEXT_HTML).cacheControl(CacheControl.noCache()).bodyValue(indexHtml))
+            .and(RouterFunctions.resources("/**", new ClassPathResource("static/")));
         return router;
     }
 
     /**
-     * Default Resilience4j circuit breaker configuration
+     * Default Resilience4j circuit breaker configuration. Calls are cut short by the adaptive timeout of their
+     * downstream service first; the time limiter only backs it up with the highest configured ceiling.
      */
     @Bean
-    public Customizer<ReactiveResilience4JCircuitBreakerFactory> defaultCustomizer() {
+    public Customizer<ReactiveResilience4JCircuitBreakerFactory> defaultCustomizer(TimeoutProperties timeoutProperties) {
         return factory -> factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
             .circuitBreakerConfig(CircuitBreakerConfig.ofDefaults())
-            .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(10)).build())
+            .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(timeoutProperties.maxCeiling()).build())
             .build());
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.samples.petclinic.api.system.RollingLatencyWindow;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Timeout of the calls to one downstream service, set from its recent latencies: the configured percentile
+ * times the multiplier, kept between floor and ceiling.
+ * <p>
+ * Calls that time out are recorded with the time they were given, so that when the service slows down for good
+ * the percentile catches up and the timeout grows back towards the ceiling instead of failing every call.
+ * <p>
+ * The ceiling applies until enough latencies are known, after which the percentile is recomputed at most once a
+ * second.
+ */
+public class AdaptiveTimeout {
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private static final int MIN_SAMPLES = 100;
+
+    private final TimeoutProperties.Policy policy;
+
+    private final RollingLatencyWindow latencies;
+
+    private final Counter expirations;
+
+    private volatile Duration timeout;
+
+    private volatile long timeoutComputedAt;
+
+    public AdaptiveTimeout(String serviceId, TimeoutProperties.Policy policy, MeterRegistry meterRegistry) {
+        this(serviceId, AdaptiveTimeouts.ALL_OPERATIONS, policy, meterRegistry);
+    }
+
+    public AdaptiveTimeout(String serviceId, String operation, TimeoutProperties.Policy policy, MeterRegistry meterRegistry) {
+        this.policy = policy;
+        this.latencies = new RollingLatencyWindow(policy.windowSize());
+        this.timeout = policy.ceiling();
+        this.timeoutComputedAt = System.nanoTime() - REFRESH_INTERVAL.toNanos();
+        this.expirations = Counter.builder("gateway.timeout.expirations")
+            .description("Downstream calls cancelled by their timeout")
+            .tag("service", serviceId)
+            .tag("operation", operation)
+            .register(meterRegistry);
+        Gauge.builder("gateway.timeout.current", this, t -> t.timeout.toNanos() / 1e9)
+            .description("Timeout currently applied to downstream calls")
+            .tag("service", serviceId)
+            .tag("operation", operation)
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    public <T> Mono<T> apply(Mono<T> call) {
+        return Mono.defer(() -> {
+            Duration current = current();
+            long start = System.nanoTime();
+            return call
+                .doOnSuccess(value -> latencies.record(System.nanoTime() - start))
+                .timeout(current)
+                .doOnError(TimeoutException.class, e -> {
+                    expirations.increment();
+                    latencies.record(current);
+                });
+        });
+    }
+
+    public Duration current() {
+        if (!policy.adaptive() || latencies.count() < MIN_SAMPLES) {
+            return policy.ceiling();
+        }
+        long now = System.nanoTime();
+        if (now - timeoutComputedAt >= REFRESH_INTERVAL.toNanos()) {
+            timeout = latencies.percentile(policy.percentile(), MIN_SAMPLES)
+                .map(latency -> bounded(Duration.ofNanos((long) (latency.toNanos() * policy.multiplier()))))
+                .orElse(policy.ceiling());
+            timeoutComputedAt = now;
+        }
+        return timeout;
+    }
+
+    private Duration bounded(Duration candidate) {
+        if (candidate.compareTo(policy.floor()) < 0) {
+            return policy.floor();
+        }
+        return candidate.compareTo(policy.ceiling()) > 0 ? policy.ceiling() : candidate;
+    }
+}
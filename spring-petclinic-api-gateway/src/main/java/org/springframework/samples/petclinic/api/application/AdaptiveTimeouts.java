@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link AdaptiveTimeout} per downstream service id, shared by the service clients and the gateway routes,
+ * and one per operation for the clients whose calls differ too much in latency to share a window, like a single
+ * owner and a batch of owners.
+ */
+@Component
+public class AdaptiveTimeouts {
+
+    static final String ALL_OPERATIONS = "all";
+
+    private final TimeoutProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AdaptiveTimeout> timeouts = new ConcurrentHashMap<>();
+
+    public AdaptiveTimeouts(TimeoutProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public AdaptiveTimeout forService(String serviceId) {
+        return forOperation(serviceId, ALL_OPERATIONS);
+    }
+
+    public AdaptiveTimeout forOperation(String serviceId, String operation) {
+        return timeouts.computeIfAbsent(serviceId + '/' + operation,
+            key -> new AdaptiveTimeout(serviceId, operation, properties.policy(serviceId), meterRegistry));
+    }
+}
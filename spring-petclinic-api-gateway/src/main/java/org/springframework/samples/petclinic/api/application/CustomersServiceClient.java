@@ -15,27 +15,88 @@
  */
 package org.springframework.samples.petclinic.api.application;
 
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetType;
+import org.springframework.samples.petclinic.api.system.DownstreamHttpClients;
+import org.springframework.samples.petclinic.api.system.ServiceCodecProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.joining;
+
 /**
  * @author Maciej Szarlinski
  */
 @Component
 public class CustomersServiceClient {
 
-    private final WebClient.Builder webClientBuilder;
+    static final String SERVICE_ID = "customers-service";
+
+    private final WebClient webClient;
+
+    private final AdaptiveTimeout ownerTimeout;
 
-    public CustomersServiceClient(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    private final AdaptiveTimeout ownersTimeout;
+
+    private final AdaptiveTimeout petTypesTimeout;
+
+    public CustomersServiceClient(WebClient.Builder webClientBuilder, DownstreamHttpClients httpClients,
+                                  AdaptiveTimeouts timeouts, ServiceCodecProperties codec) {
+        this.webClient = webClientBuilder.clone()
+            .clientConnector(httpClients.connector(SERVICE_ID))
+            .defaultHeaders(headers -> headers.setAccept(codec.accept()))
+            .build();
+        this.ownerTimeout = timeouts.forOperation(SERVICE_ID, "getOwner");
+        this.ownersTimeout = timeouts.forOperation(SERVICE_ID, "getOwners");
+        this.petTypesTimeout = timeouts.forOperation(SERVICE_ID, "getPetTypes");
     }
 
     public Mono<OwnerDetails> getOwner(final int ownerId) {
-        return webClientBuilder.build().get()
+        return webClient.get()
             .uri("http://customers-service/owners/{ownerId}", ownerId)
             .retrieve()
-            .bodyToMono(OwnerDetails.class);
+            .bodyToMono(OwnerDetails.class)
+            .transform(ownerTimeout::apply);
+    }
+
+    /**
+     * Hands the undecoded JSON of the owner to the reader, whatever the configured service codec.
+     */
+    public <T> Mono<T> readOwner(final int ownerId, Function<Flux<DataBuffer>, Mono<T>> reader) {
+        return reader.apply(webClient.get()
+                .uri("http://customers-service/owners/{ownerId}", ownerId)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class))
+            .transform(ownerTimeout::apply);
+    }
+
+    public Mono<List<OwnerDetails>> getOwners(final List<Integer> ownerIds) {
+        return webClient.get()
+            .uri("http://customers-service/owners?ownerId={ownerIds}", joinIds(ownerIds))
+            .retrieve()
+            // decoded as a whole: CBOR, unlike JSON and Smile, cannot be split into elements as it arrives
+            .bodyToMono(new ParameterizedTypeReference<List<OwnerDetails>>() {})
+            .transform(ownersTimeout::apply);
+    }
+
+    public Mono<List<PetType>> getPetTypes() {
+        return webClient.get()
+            .uri("http://customers-service/petTypes")
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<List<PetType>>() {})
+            .transform(petTypesTimeout::apply);
+    }
+
+    private String joinIds(List<Integer> ownerIds) {
+        return ownerIds.stream().map(Object::toString).collect(joining(","));
     }
 }
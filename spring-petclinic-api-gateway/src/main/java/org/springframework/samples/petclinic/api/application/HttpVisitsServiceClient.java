@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.DownstreamHttpClients;
+import org.springframework.samples.petclinic.api.system.ServiceCodecProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * @author Maciej Szarlinski
+ */
+@Component
+public class HttpVisitsServiceClient implements VisitsServiceClient {
+
+    // Could be changed for testing purpose
+    private String hostname = "http://" + SERVICE_ID + "/";
+
+    private final WebClient webClient;
+
+    private final RequestHedger hedger;
+
+    private final AdaptiveTimeout timeout;
+
+    private final AdaptiveTimeout readTimeout;
+
+    public HttpVisitsServiceClient(WebClient.Builder webClientBuilder, DownstreamHttpClients httpClients,
+                                   RequestHedgers hedgers, AdaptiveTimeouts timeouts, ServiceCodecProperties codec) {
+        this.webClient = webClientBuilder.clone()
+            .clientConnector(httpClients.connector(SERVICE_ID))
+            .defaultHeaders(headers -> headers.setAccept(codec.accept()))
+            .build();
+        this.hedger = hedgers.forService(SERVICE_ID);
+        this.timeout = timeouts.forService(SERVICE_ID);
+        this.readTimeout = timeouts.forOperation(SERVICE_ID, "readVisitsForPets");
+    }
+
+    @Override
+    public Mono<Visits> getVisitsForPets(final List<Integer> petIds) {
+        return hedger.hedge(() -> webClient
+            .get()
+            .uri(hostname + "pets/visits?petId={petId}", joinIds(petIds))
+            .retrieve()
+            .bodyToMono(Visits.class))
+            .transform(timeout::apply);
+    }
+
+    /**
+     * The undecoded JSON of the visits as it is received, whatever the configured service codec. The request is
+     * hedged and timed out until the response headers arrive, the body then being up to the subscriber.
+     */
+    public Flux<DataBuffer> readVisitsForPets(final List<Integer> petIds) {
+        return hedger.hedge(() -> webClient
+            .get()
+            .uri(hostname + "pets/visits?petId={petId}", joinIds(petIds))
+            .accept(MediaType.APPLICATION_JSON)
+            .retrieve()
+            .toEntityFlux(DataBuffer.class))
+            .transform(readTimeout::apply)
+            .flatMapMany(ResponseEntity::getBody);
+    }
+
+    private String joinIds(List<Integer> petIds) {
+        return petIds.stream().map(Object::toString).collect(joining(","));
+    }
+
+    void setHostname(String hostname) {
+        this.hostname = hostname;
+    }
+}
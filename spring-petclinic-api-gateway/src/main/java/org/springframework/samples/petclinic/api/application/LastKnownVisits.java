@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.LastKnownVisitsProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded store of the last visits successfully read from visits-service, per pet.
+ * <p>
+ * When visits-service is unavailable the owner details are assembled from this store instead of with no visits
+ * at all, marked with the time the visits were read. Meanwhile a refresh is attempted in the background through
+ * the same circuit breaker, so the store catches up as soon as visits-service recovers.
+ */
+@Component
+public class LastKnownVisits {
+
+    private final boolean enabled;
+
+    private final Cache<Integer, StoredVisits> visitsByPetId;
+
+    private final Set<List<Integer>> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Counter staleServed;
+
+    public LastKnownVisits(LastKnownVisitsProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.visitsByPetId = Caffeine.newBuilder()
+            .expireAfterWrite(properties.maxAge())
+            .maximumSize(properties.maximumSize())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, visitsByPetId, "lastKnownVisits");
+        this.staleServed = Counter.builder("gateway.visits.stale.served")
+            .description("Responses assembled with last-known visits because visits-service was unavailable")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Pets without any visit are remembered too, so that they are not mistaken for unknown pets later.
+     */
+    public void remember(List<Integer> petIds, Visits visits) {
+        if (!enabled) {
+            return;
+        }
+        Instant now = Instant.now();
+        Map<Integer, List<VisitDetails>> visitsByPet = visits.getVisitsByPetId();
+        petIds.forEach(petId -> visitsByPetId.put(petId, new StoredVisits(visitsByPet.getOrDefault(petId, List.of()), now)));
+    }
+
+    /**
+     * @return the remembered visits of the pets, stale since the oldest of them was read, or empty when none of
+     * the pets is known
+     */
+    public Optional<Snapshot<Visits>> lookup(List<Integer> petIds) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        List<VisitDetails> items = new ArrayList<>();
+        Instant oldest = null;
+        for (Integer petId : petIds) {
+            StoredVisits stored = visitsByPetId.getIfPresent(petId);
+            if (stored != null) {
+                items.addAll(stored.visits());
+                oldest = oldest == null || stored.readAt().isBefore(oldest) ? stored.readAt() : oldest;
+            }
+        }
+        if (oldest == null) {
+            return Optional.empty();
+        }
+        staleServed.increment();
+        return Optional.of(Snapshot.stale(new Visits(items), oldest));
+    }
+
+    /**
+     * Refreshes the visits of the pets in the background, at most once at a time for the same pets.
+     * Failures are ignored: the next stale read tries again.
+     */
+    public void revalidate(List<Integer> petIds, Supplier<Mono<Visits>> load) {
+        if (!enabled || !refreshing.add(petIds)) {
+            return;
+        }
+        Mono.defer(load)
+            .doFinally(signal -> refreshing.remove(petIds))
+            .subscribe(visits -> remember(petIds, visits), error -> {
+            });
+    }
+
+    public void evictAll() {
+        visitsByPetId.invalidateAll();
+    }
+
+    private record StoredVisits(List<VisitDetails> visits, Instant readAt) {
+    }
+}
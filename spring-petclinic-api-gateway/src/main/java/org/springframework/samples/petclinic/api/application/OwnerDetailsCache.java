@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.system.OwnerDetailsCacheProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of assembled {@link OwnerDetails} (owner, pets and visits) keyed by owner id.
+ * <p>
+ * Entries are evicted when a write for the owner, one of its pets or one of its visits goes through the gateway;
+ * the owner of a pet is found through an index of the cached pets. Each write is stamped with a logical clock,
+ * per owner and per pet, so that a load that started before a write to the same owner or to one of its pets does
+ * not re-populate the cache with stale data once it completes. Writes to other owners do not hold up the load.
+ * <p>
+ * The cached values are shared by every request served from the cache, so they must not be modified: they are the
+ * immutable copies assembled by {@link OwnerDetails#withVisits}.
+ */
+@Component
+public class OwnerDetailsCache {
+
+    static final String CACHE_NAME = "ownerDetails";
+
+    /**
+     * How long a write is remembered, far longer than a load, which the downstream timeouts bound to seconds.
+     */
+    private static final Duration WRITE_RETENTION = Duration.ofMinutes(5);
+
+    private final boolean enabled;
+
+    private final Cache<Integer, OwnerDetails> cache;
+
+    /**
+     * Owner of each cached pet. Entries are refreshed with their owner and expire like it.
+     */
+    private final Cache<Integer, Integer> ownerOfPet;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Cache<Integer, Long> ownerWrites;
+
+    private final Cache<Integer, Long> petWrites;
+
+    private volatile long clearedAt;
+
+    private final Counter invalidations;
+
+    public OwnerDetailsCache(OwnerDetailsCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(properties.ttl())
+            .maximumSize(properties.maximumSize())
+            .recordStats()
+            .build();
+        this.ownerOfPet = Caffeine.newBuilder().expireAfterWrite(properties.ttl()).build();
+        this.ownerWrites = Caffeine.newBuilder().expireAfterWrite(WRITE_RETENTION).build();
+        this.petWrites = Caffeine.newBuilder().expireAfterWrite(WRITE_RETENTION).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.invalidations = Counter.builder("gateway.owner.details.cache.invalidations")
+            .description("Owner details evicted because a write went through the gateway")
+            .register(meterRegistry);
+    }
+
+    public Mono<OwnerDetails> get(int ownerId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return Mono.fromSupplier(() -> cache.getIfPresent(ownerId));
+    }
+
+    /**
+     * @return the cached owners among the given ones, by id
+     */
+    public Mono<Map<Integer, OwnerDetails>> getAll(Collection<Integer> ownerIds) {
+        if (!enabled) {
+            return Mono.just(Map.of());
+        }
+        return Mono.fromSupplier(() -> cache.getAllPresent(ownerIds));
+    }
+
+    /**
+     * @return the token to hand back to {@link #put(int, OwnerDetails, long)} once the load completes
+     */
+    public long generation() {
+        return clock.get();
+    }
+
+    public void put(int ownerId, OwnerDetails owner, long loadGeneration) {
+        if (!enabled) {
+            return;
+        }
+        owner.getPetIds().forEach(petId -> ownerOfPet.put(petId, ownerId));
+        cache.put(ownerId, owner);
+        // A write raced with the load: the value we just stored may predate it
+        if (writtenSince(loadGeneration, ownerId, owner)) {
+            cache.invalidate(ownerId);
+        }
+    }
+
+    private boolean writtenSince(long loadGeneration, int ownerId, OwnerDetails owner) {
+        return clearedAt > loadGeneration
+            || writtenSince(loadGeneration, ownerWrites, ownerId)
+            || owner.getPetIds().stream().anyMatch(petId -> writtenSince(loadGeneration, petWrites, petId));
+    }
+
+    private static boolean writtenSince(long loadGeneration, Cache<Integer, Long> writes, int id) {
+        Long writtenAt = writes.getIfPresent(id);
+        return writtenAt != null && writtenAt > loadGeneration;
+    }
+
+    public void evictOwner(int ownerId) {
+        ownerWrites.put(ownerId, clock.incrementAndGet());
+        cache.invalidate(ownerId);
+        invalidations.increment();
+    }
+
+    public void evictOwnerOfPet(int petId) {
+        petWrites.put(petId, clock.incrementAndGet());
+        Integer ownerId = ownerOfPet.getIfPresent(petId);
+        if (ownerId != null) {
+            cache.invalidate(ownerId);
+        }
+        invalidations.increment();
+    }
+
+    public void evictAll() {
+        clearedAt = clock.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Assembles owner details from the raw JSON of customers-service and visits-service without decoding them into
+ * DTOs: each upstream body is fed buffer by buffer to a non-blocking Jackson parser, which only records where the
+ * pets end and where each visit starts and ends. The visits are then spliced into the owner document as byte
+ * ranges, so no object graph nor string is built and the bytes are copied once, into the response.
+ * <p>
+ * The owner is read whole, as its pet ids are needed to ask for the visits, and is retained until
+ * {@link OwnerJson#release()}. The visits are written as they arrive and their buffers released once written, which
+ * requires visits-service to send them grouped by pet, in the order the pet ids were asked in.
+ */
+@Component
+public class OwnerDetailsJsonMerger {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final byte[] VISITS_START = ",\"visits\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] COMMA = {','};
+
+    private static final byte[] VISITS_END = {']'};
+
+    /**
+     * Reads an owner as sent by customers-service, finding the id and the end of each of its pets.
+     */
+    public Mono<OwnerJson> readOwner(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            OwnerReader reader = new OwnerReader();
+            return body
+                .doOnNext(reader::feed)
+                .then(Mono.fromCallable(reader::finish))
+                .doOnError(e -> reader.abandon())
+                .doOnCancel(reader::abandon);
+        });
+    }
+
+    /**
+     * Writes the owner with a {@code visits} array added to each pet, the same document as the one serialized from
+     * {@code OwnerDetails}. The owner up to its first pet is written right away, then each visit as soon as it has
+     * been received; a visit of a pet whose array was already closed fails the merge.
+     *
+     * @param visits visits as sent by visits-service ({@code {"items": [...]}}) for {@link OwnerJson#petIds()}
+     */
+    public Flux<DataBuffer> merge(OwnerJson owner, Flux<DataBuffer> visits, DataBufferFactory bufferFactory) {
+        return Flux.defer(() -> {
+            VisitsSplicer splicer = new VisitsSplicer(owner, bufferFactory);
+            return Flux.concat(
+                    Mono.fromCallable(splicer::start),
+                    visits.concatMap(chunk -> Mono.fromCallable(() -> splicer.splice(chunk))),
+                    Mono.fromCallable(splicer::finish))
+                .doFinally(signal -> splicer.abandon())
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    public static final class OwnerJson {
+
+        private final Payload payload;
+
+        private final List<PetEnd> pets;
+
+        OwnerJson(Payload payload, List<PetEnd> pets) {
+            this.payload = payload;
+            this.pets = pets;
+        }
+
+        /**
+         * Ids of the pets in the order they are written, pets without one left out.
+         */
+        public List<Integer> petIds() {
+            return pets.stream().map(PetEnd::petId).filter(Objects::nonNull).toList();
+        }
+
+        public void release() {
+            payload.release();
+        }
+    }
+
+    /**
+     * @param petId  null when the pet has no id, so that no visit is added to its empty array
+     * @param offset position of the closing brace of the pet
+     */
+    private record PetEnd(Integer petId, long offset) {
+    }
+
+    /**
+     * An upstream body kept as the buffers it was received in, from the first one not yet released.
+     * <p>
+     * Copies start from the buffer the previous one ended in, so that a body copied range after range in
+     * increasing order is walked once.
+     */
+    private static final class Payload {
+
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        private long size;
+
+        /**
+         * Chunks before it have been released.
+         */
+        private int retained;
+
+        /**
+         * Chunk the last copy ended in.
+         */
+        private int cursor;
+
+        private boolean released;
+
+        synchronized void add(DataBuffer buffer) {
+            if (released) {
+                DataBufferUtils.release(buffer);
+                return;
+            }
+            chunks.add(new Chunk(buffer, size));
+            size += buffer.readableByteCount();
+        }
+
+        synchronized void copy(long from, long to, DataBuffer target) {
+            if (cursor < retained || cursor >= chunks.size() || chunks.get(cursor).offset() > from) {
+                cursor = retained;
+            }
+            for (int i = cursor; i < chunks.size() && chunks.get(i).offset() < to; i++) {
+                Chunk chunk = chunks.get(i);
+                if (chunk.end() > from) {
+                    chunk.copy(Math.max(from, chunk.offset()) - chunk.offset(), Math.min(to, chunk.end()) - chunk.offset(), target);
+                    cursor = i;
+                }
+            }
+        }
+
+        /**
+         * Releases the buffers holding nothing past the offset.
+         */
+        synchronized void releaseBefore(long offset) {
+            while (retained < chunks.size() && chunks.get(retained).end() <= offset) {
+                DataBufferUtils.release(chunks.set(retained++, null).buffer());
+            }
+        }
+
+        synchronized void release() {
+            released = true;
+            releaseBefore(Long.MAX_VALUE);
+        }
+
+        private record Chunk(DataBuffer buffer, long offset) {
+
+            long end() {
+                return offset + buffer.readableByteCount();
+            }
+
+            void copy(long from, long to, DataBuffer target) {
+                long start = 0;
+                try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                    while (buffers.hasNext() && start < to) {
+                        ByteBuffer byteBuffer = buffers.next();
+                        long end = start + byteBuffer.remaining();
+                        if (end > from) {
+                            int first = (int) (Math.max(from, start) - start);
+                            int last = (int) (Math.min(to, end) - start);
+                            target.write(byteBuffer.slice(byteBuffer.position() + first, last - first));
+                        }
+                        start = end;
+                    }
+                }
+            }
+        }
+    }
+
+    private abstract static class PayloadReader {
+
+        final Payload payload = new Payload();
+
+        final JsonParser parser;
+
+        private volatile boolean finished;
+
+        PayloadReader() {
+            try {
+                this.parser = JSON.createNonBlockingByteBufferParser();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void feed(DataBuffer chunk) {
+            payload.add(chunk);
+            try (DataBuffer.ByteBufferIterator buffers = chunk.readableByteBuffers()) {
+                while (buffers.hasNext()) {
+                    ByteBuffer buffer = buffers.next();
+                    if (buffer.hasRemaining()) {
+                        ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).feedInput(buffer);
+                        drain();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Marks what was received as owned by the result, which is produced from then on.
+         */
+        void markFinished() throws IOException {
+            parser.close();
+            finished = true;
+        }
+
+        /**
+         * Releases what was received unless the result, which owns it from then on, was produced.
+         */
+        void abandon() {
+            if (!finished) {
+                payload.release();
+            }
+        }
+
+        void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                onToken(token, parser.getParsingContext());
+            }
+        }
+
+        /**
+         * Position right after the current token.
+         */
+        long offset() {
+            return parser.currentLocation().getByteOffset();
+        }
+
+        abstract void onToken(JsonToken token, JsonStreamContext context) throws IOException;
+
+        /**
+         * Whether the context is the array of the given top-level property.
+         */
+        static boolean isTopLevelArray(JsonStreamContext context, String name) {
+            return context != null && context.inArray()
+                && context.getParent().inObject() && name.equals(context.getParent().getCurrentName())
+                && context.getParent().getParent().inRoot();
+        }
+    }
+
+    private static final class OwnerReader extends PayloadReader {
+
+        private final List<PetEnd> pets = new ArrayList<>();
+
+        private Integer petId;
+
+        @Override
+        void onToken(JsonToken token, JsonStreamContext context) throws IOException {
+            if (token == JsonToken.START_OBJECT && isTopLevelArray(context.getParent(), "pets")) {
+                petId = null;
+            } else if (token == JsonToken.VALUE_NUMBER_INT && "id".equals(context.getCurrentName())
+                && isTopLevelArray(context.getParent(), "pets")) {
+                petId = parser.getIntValue();
+            } else if (token == JsonToken.END_OBJECT && isTopLevelArray(context, "pets")) {
+                pets.add(new PetEnd(petId, offset() - 1));
+            }
+        }
+
+        OwnerJson finish() throws IOException {
+            parser.getNonBlockingInputFeeder().endOfInput();
+            drain();
+            markFinished();
+            return new OwnerJson(payload, pets);
+        }
+    }
+
+    /**
+     * Writes the owner around the visits as they are parsed. Each call returns what could be written since the
+     * previous one, in a single buffer.
+     * <p>
+     * A visits body cut short by an error the caller recovers from still gives a well-formed document, with the
+     * visits received in full up to then.
+     */
+    private static final class VisitsSplicer extends PayloadReader {
+
+        private final OwnerJson owner;
+
+        private final Map<Integer, Integer> petIndexes = new HashMap<>();
+
+        private final DataBufferFactory bufferFactory;
+
+        private DataBuffer output;
+
+        /**
+         * Index of the pet whose visits array is open.
+         */
+        private int pet;
+
+        private int visitsOfPet;
+
+        private long visitStart = -1;
+
+        private Integer petId;
+
+        VisitsSplicer(OwnerJson owner, DataBufferFactory bufferFactory) {
+            this.owner = owner;
+            this.bufferFactory = bufferFactory;
+            for (int i = owner.pets.size() - 1; i >= 0; i--) {
+                if (owner.pets.get(i).petId() != null) {
+                    petIndexes.put(owner.pets.get(i).petId(), i);
+                }
+            }
+        }
+
+        DataBuffer start() {
+            if (!owner.pets.isEmpty()) {
+                copyOwner(0, owner.pets.get(0).offset());
+                output().write(VISITS_START);
+            }
+            return flush();
+        }
+
+        DataBuffer splice(DataBuffer chunk) {
+            feed(chunk);
+            DataBuffer ready = flush();
+            payload.releaseBefore(visitStart < 0 ? offset() : visitStart);
+            return ready;
+        }
+
+        DataBuffer finish() throws IOException {
+            markFinished();
+            payload.release();
+            if (owner.pets.isEmpty()) {
+                copyOwner(0, owner.payload.size);
+            } else {
+                closePetsUntil(owner.pets.size());
+            }
+            return flush();
+        }
+
+        @Override
+        void onToken(JsonToken token, JsonStreamContext context) throws IOException {
+            if (token == JsonToken.START_OBJECT && isTopLevelArray(context.getParent(), "items")) {
+                visitStart = offset() - 1;
+                petId = null;
+            } else if (token == JsonToken.VALUE_NUMBER_INT && "petId".equals(context.getCurrentName())
+                && isTopLevelArray(context.getParent(), "items")) {
+                petId = parser.getIntValue();
+            } else if (token == JsonToken.END_OBJECT && isTopLevelArray(context, "items")) {
+                if (petId != null) {
+                    write(petId, visitStart, offset());
+                }
+                visitStart = -1;
+            }
+        }
+
+        private void write(int visitPetId, long from, long to) {
+            Integer index = petIndexes.get(visitPetId);
+            if (index == null) {
+                return;
+            }
+            if (index < pet) {
+                throw new IllegalStateException("Visit of pet " + visitPetId + " received after the visits of pet "
+                    + owner.pets.get(pet).petId() + ", its visits array is already written");
+            }
+            closePetsUntil(index);
+            if (visitsOfPet++ > 0) {
+                output().write(COMMA);
+            }
+            payload.copy(from, to, output());
+        }
+
+        /**
+         * Closes the open visits array and opens the one of each following pet up to the given one, or writes the
+         * end of the owner when past its last pet.
+         */
+        private void closePetsUntil(int index) {
+            for (; pet < index; pet++) {
+                output().write(VISITS_END);
+                long from = owner.pets.get(pet).offset();
+                if (pet + 1 < owner.pets.size()) {
+                    copyOwner(from, owner.pets.get(pet + 1).offset());
+                    output().write(VISITS_START);
+                } else {
+                    copyOwner(from, owner.payload.size);
+                }
+                visitsOfPet = 0;
+            }
+        }
+
+        private void copyOwner(long from, long to) {
+            owner.payload.copy(from, to, output());
+        }
+
+        private DataBuffer output() {
+            if (output == null) {
+                output = bufferFactory.allocateBuffer(256);
+            }
+            return output;
+        }
+
+        /**
+         * @return what was written since the last call, null if nothing
+         */
+        private DataBuffer flush() {
+            DataBuffer ready = output;
+            output = null;
+            return ready;
+        }
+
+        @Override
+        void abandon() {
+            super.abandon();
+            if (output != null) {
+                DataBufferUtils.release(flush());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.loadbalance.RoundRobinLoadbalanceStrategy;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.context.annotation.Primary;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.VisitsTransportProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Looks up visits with a request-stream on the {@value #ROUTE} route of visits-service. The requester keeps one
+ * long-lived connection per registered instance, multiplexes concurrent lookups over it and round-robins between
+ * instances. Visits are requested in batches of at most {@value #BATCH_SIZE}, the size of the pages visits-service
+ * reads them in, so that an instance only queries and sends what the gateway asked for; they are gathered into
+ * {@link Visits}, as owner details need all of them.
+ * <p>
+ * Replaces {@link HttpVisitsServiceClient} when {@code gateway.visits.transport.type} is {@code rsocket}. Lookups
+ * are hedged and timed out under the policies of visits-service, like over HTTP.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "gateway.visits.transport", name = "type", havingValue = "rsocket")
+public class RSocketVisitsServiceClient implements VisitsServiceClient, DisposableBean {
+
+    static final String ROUTE = "pets.visits";
+
+    static final int BATCH_SIZE = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(RSocketVisitsServiceClient.class);
+
+    private final RSocketRequester requester;
+
+    private final RequestHedger hedger;
+
+    private final AdaptiveTimeout timeout;
+
+    public RSocketVisitsServiceClient(RSocketRequester.Builder requesterBuilder, ReactiveDiscoveryClient discoveryClient,
+                                      VisitsTransportProperties properties, RequestHedgers hedgers,
+                                      AdaptiveTimeouts timeouts) {
+        this.requester = requesterBuilder.transports(targets(discoveryClient, properties),
+            new RoundRobinLoadbalanceStrategy());
+        this.hedger = hedgers.forService(SERVICE_ID);
+        this.timeout = timeouts.forService(SERVICE_ID);
+    }
+
+    @Override
+    public Mono<Visits> getVisitsForPets(final List<Integer> petIds) {
+        return hedger.hedge(() -> requester.route(ROUTE)
+                .data(petIds)
+                .retrieveFlux(VisitDetails.class)
+                .limitRate(BATCH_SIZE)
+                .collectList()
+                .map(Visits::new))
+            .transform(timeout::apply);
+    }
+
+    @Override
+    public void destroy() {
+        requester.dispose();
+    }
+
+    /**
+     * Registered instances of visits-service exposing an RSocket port, polled every
+     * {@link VisitsTransportProperties#discoveryRefresh()}. Connections to instances that are gone are closed by
+     * the requester.
+     */
+    private static Flux<List<LoadbalanceTarget>> targets(ReactiveDiscoveryClient discoveryClient,
+                                                         VisitsTransportProperties properties) {
+        return Flux.interval(Duration.ZERO, properties.discoveryRefresh())
+            .onBackpressureDrop()
+            .concatMap(tick -> discoveryClient.getInstances(SERVICE_ID)
+                .mapNotNull(instance -> target(instance, properties.portMetadataKey()).orElse(null))
+                .collectList()
+                .onErrorResume(e -> {
+                    log.warn("Could not refresh the instances of {}: {}", SERVICE_ID, e.toString());
+                    return Mono.empty();
+                }));
+    }
+
+    private static Optional<LoadbalanceTarget> target(ServiceInstance instance, String portMetadataKey) {
+        return Optional.ofNullable(instance.getMetadata().get(portMetadataKey))
+            .map(Integer::valueOf)
+            .map(port -> LoadbalanceTarget.from(instance.getHost() + ":" + port,
+                TcpClientTransport.create(instance.getHost(), port)));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of reactive calls: concurrent callers asking for the same key while a call is in
+ * flight subscribe to that call instead of starting their own, so N simultaneous callers cost one round trip.
+ * <p>
+ * The shared call is not cancelled when one of its subscribers cancels; it always runs to completion and is
+ * forgotten as soon as it terminates, so later callers never see a previous result.
+ *
+ * @param <K> key identifying identical requests
+ * @param <V> result type
+ */
+public class RequestCoalescer<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter executed;
+
+    private final Counter coalesced;
+
+    public RequestCoalescer(String name, MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("gateway.coalescer.requests")
+            .description("Requests that went through a coalescer")
+            .tag("name", name)
+            .tag("result", "executed")
+            .register(meterRegistry);
+        this.coalesced = Counter.builder("gateway.coalescer.requests")
+            .description("Requests that went through a coalescer")
+            .tag("name", name)
+            .tag("result", "coalesced")
+            .register(meterRegistry);
+        Gauge.builder("gateway.coalescer.in.flight", inFlight, Map::size)
+            .description("Distinct calls currently in flight")
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            AtomicBoolean leader = new AtomicBoolean();
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                leader.set(true);
+                return share(k, call);
+            });
+            (leader.get() ? executed : coalesced).increment();
+            return shared;
+        });
+    }
+
+    private Mono<V> share(K key, Supplier<Mono<V>> call) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        Mono<V> shared = Mono.defer(call)
+            .doFinally(signal -> inFlight.remove(key, self.get()))
+            .share();
+        self.set(shared);
+        return shared;
+    }
+}
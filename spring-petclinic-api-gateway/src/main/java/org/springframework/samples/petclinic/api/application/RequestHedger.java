@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import org.springframework.samples.petclinic.api.system.RollingLatencyWindow;
+import org.springframework.samples.petclinic.api.system.TokenBudget;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Hedged execution of idempotent calls to one downstream service.
+ * <p>
+ * When the primary call has not answered after the configured latency percentile, a second identical call is
+ * sent, which the load balancer routes on its own. Whatever the primary answers before that delay, a value, an
+ * error or nothing, is passed on as is. Once hedged, the first call to answer without an error wins and the
+ * other one is cancelled. Hedges are paid for from a {@link TokenBudget}, so they cannot amplify the load
+ * beyond {@link HedgingProperties.Policy#budgetRatio()} when the whole service is slow.
+ */
+public class RequestHedger {
+
+    private static final Duration DELAY_REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private final HedgingProperties.Policy policy;
+
+    private final RollingLatencyWindow latencies;
+
+    private final TokenBudget budget;
+
+    private final Counter hedgesSent;
+
+    private final Counter hedgesWon;
+
+    private final Counter hedgesDenied;
+
+    private volatile Duration hedgeDelay;
+
+    private volatile long hedgeDelayComputedAt;
+
+    public RequestHedger(String serviceId, HedgingProperties.Policy policy, MeterRegistry meterRegistry) {
+        this.policy = policy;
+        this.latencies = new RollingLatencyWindow(policy.windowSize());
+        this.budget = new TokenBudget(policy.budgetRatio(), policy.budgetBurst());
+        this.hedgeDelay = policy.maxDelay();
+        this.hedgeDelayComputedAt = System.nanoTime() - DELAY_REFRESH_INTERVAL.toNanos();
+        this.hedgesSent = hedgeCounter(meterRegistry, serviceId, "sent");
+        this.hedgesWon = hedgeCounter(meterRegistry, serviceId, "won");
+        this.hedgesDenied = hedgeCounter(meterRegistry, serviceId, "denied");
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String serviceId, String result) {
+        return Counter.builder("gateway.hedging.hedges")
+            .description("Hedged requests sent, won against the primary, or denied by the hedging budget")
+            .tag("service", serviceId)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return policy.enabled();
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        return hedge(call, call);
+    }
+
+    /**
+     * @param primary the call sent right away
+     * @param hedge   the call sent when the primary is still running after the hedge delay
+     */
+    public <T> Mono<T> hedge(Supplier<Mono<T>> primary, Supplier<Mono<T>> hedge) {
+        if (!policy.enabled()) {
+            return Mono.defer(primary);
+        }
+        return Mono.deferContextual(context -> {
+            budget.deposit();
+            Sinks.One<T> primaryResult = Sinks.one();
+            Disposable primaryCall = timed(primary)
+                .contextWrite(context)
+                .subscribe(primaryResult::tryEmitValue, primaryResult::tryEmitError, primaryResult::tryEmitEmpty);
+            Mono<T> primaryAnswer = primaryResult.asMono();
+            return primaryAnswer
+                .timeout(currentHedgeDelay(), Mono.defer(() -> hedgeOrWait(primaryAnswer, primaryCall, hedge)))
+                .doFinally(signal -> primaryCall.dispose());
+        });
+    }
+
+    /**
+     * Once the hedge is sent, an error of either call only counts when the other one fails too, in which case the
+     * primary's error is returned. A hedge answering first cancels the primary call right away, rather than once
+     * the caller is done with the answer.
+     */
+    private <T> Mono<T> hedgeOrWait(Mono<T> primaryAnswer, Disposable primaryCall, Supplier<Mono<T>> hedge) {
+        if (!budget.tryWithdraw()) {
+            hedgesDenied.increment();
+            return primaryAnswer;
+        }
+        hedgesSent.increment();
+        Mono<Signal<T>> hedgeAnswer = timed(hedge)
+            .doOnNext(value -> {
+                hedgesWon.increment();
+                primaryCall.dispose();
+            })
+            .materialize();
+        return Flux.merge(primaryAnswer.materialize(), hedgeAnswer)
+            .filter(signal -> !signal.isOnError())
+            .next()
+            .switchIfEmpty(primaryAnswer.materialize())
+            .dematerialize();
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.get().doOnNext(value -> latencies.record(System.nanoTime() - start));
+        });
+    }
+
+    private Duration currentHedgeDelay() {
+        long now = System.nanoTime();
+        if (now - hedgeDelayComputedAt >= DELAY_REFRESH_INTERVAL.toNanos()) {
+            hedgeDelay = latencies.percentile(policy.percentile(), 100)
+                .map(this::bounded)
+                .orElse(policy.maxDelay());
+            hedgeDelayComputedAt = now;
+        }
+        return hedgeDelay;
+    }
+
+    private Duration bounded(Duration delay) {
+        if (delay.compareTo(policy.minDelay()) < 0) {
+            return policy.minDelay();
+        }
+        return delay.compareTo(policy.maxDelay()) > 0 ? policy.maxDelay() : delay;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import java.time.Instant;
+
+/**
+ * A value as served to the client, with the time it was last known to be up to date when it is not current.
+ *
+ * @param staleSince {@code null} unless the value is known to be out of date
+ */
+public record Snapshot<T>(T value, Instant staleSince) {
+
+    public static <T> Snapshot<T> fresh(T value) {
+        return new Snapshot<>(value, null);
+    }
+
+    public static <T> Snapshot<T> stale(T value, Instant staleSince) {
+        return new Snapshot<>(value, staleSince);
+    }
+
+    public boolean isStale() {
+        return staleSince != null;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import org.springframework.samples.petclinic.api.dto.VetDetails;
+import org.springframework.samples.petclinic.api.system.DownstreamHttpClients;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Component
+public class VetsServiceClient {
+
+    static final String SERVICE_ID = "vets-service";
+
+    private final WebClient webClient;
+
+    private final AdaptiveTimeout timeout;
+
+    public VetsServiceClient(WebClient.Builder webClientBuilder, DownstreamHttpClients httpClients,
+                             AdaptiveTimeouts timeouts) {
+        this.webClient = webClientBuilder.clone()
+            .clientConnector(httpClients.connector(SERVICE_ID))
+            .build();
+        this.timeout = timeouts.forService(SERVICE_ID);
+    }
+
+    public Mono<List<VetDetails>> getVets() {
+        return webClient.get()
+            .uri("http://vets-service/vets")
+            .retrieve()
+            .bodyToFlux(VetDetails.class)
+            .collectList()
+            .transform(timeout::apply);
+    }
+}
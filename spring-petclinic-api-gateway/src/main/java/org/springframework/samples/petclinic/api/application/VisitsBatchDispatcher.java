@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.VisitsBatchProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * DataLoader-style micro-batching of {@link VisitsServiceClient#getVisitsForPets(List)}.
+ * <p>
+ * Lookups arriving within {@link VisitsBatchProperties#window()} of each other, or until
+ * {@link VisitsBatchProperties#maxBatchSize()} pet ids are collected, are merged into a single
+ * {@code pets/visits?petId=...} call. The returned visits are then split back to each caller by pet id.
+ * <p>
+ * No call carries more than {@code maxBatchSize} pet ids: a larger lookup is split into several. A lookup cancelled
+ * before its batch is sent leaves the batch, and the call of a batch is cancelled once all its lookups are.
+ */
+@Component
+public class VisitsBatchDispatcher {
+
+    private final VisitsServiceClient visitsServiceClient;
+
+    private final VisitsBatchProperties properties;
+
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private final DistributionSummary batchSize;
+
+    private final Object lock = new Object();
+
+    private List<PendingLookup> pending = new ArrayList<>();
+
+    private int pendingPetIds;
+
+    private Disposable scheduledFlush;
+
+    public VisitsBatchDispatcher(VisitsServiceClient visitsServiceClient, VisitsBatchProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.visitsServiceClient = visitsServiceClient;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("gateway.visits.batch.lookups")
+            .description("Number of visits lookups served by one call to visits-service")
+            .register(meterRegistry);
+    }
+
+    public Mono<Visits> getVisitsForPets(final List<Integer> petIds) {
+        if (petIds.size() > properties.maxBatchSize()) {
+            return Flux.fromIterable(chunks(petIds))
+                .flatMapSequential(this::getVisitsForPets)
+                .flatMapIterable(Visits::items)
+                .collectList()
+                .map(Visits::new);
+        }
+        if (!properties.enabled() || petIds.isEmpty()) {
+            return visitsServiceClient.getVisitsForPets(petIds);
+        }
+        return Mono.create(sink -> {
+            PendingLookup lookup = new PendingLookup(petIds, sink);
+            enqueue(lookup);
+            // run at once if the caller has already cancelled
+            sink.onCancel(() -> cancel(lookup));
+        });
+    }
+
+    private List<List<Integer>> chunks(List<Integer> petIds) {
+        List<Integer> distinctIds = petIds.stream().distinct().toList();
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += properties.maxBatchSize()) {
+            chunks.add(distinctIds.subList(from, Math.min(from + properties.maxBatchSize(), distinctIds.size())));
+        }
+        return chunks;
+    }
+
+    private void enqueue(PendingLookup lookup) {
+        List<Batch> batches = new ArrayList<>(2);
+        synchronized (lock) {
+            if (!pending.isEmpty() && pendingPetIds + lookup.petIds.size() > properties.maxBatchSize()) {
+                batches.add(drain());
+            }
+            pending.add(lookup);
+            pendingPetIds += lookup.petIds.size();
+            if (pendingPetIds >= properties.maxBatchSize()) {
+                batches.add(drain());
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, properties.window().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        batches.forEach(this::dispatch);
+    }
+
+    private void flush() {
+        Batch batch;
+        synchronized (lock) {
+            batch = pending.isEmpty() ? null : drain();
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private void cancel(PendingLookup lookup) {
+        Batch batch;
+        synchronized (lock) {
+            if (pending.remove(lookup)) {
+                pendingPetIds -= lookup.petIds.size();
+                if (pending.isEmpty()) {
+                    cancelScheduledFlush();
+                }
+                return;
+            }
+            batch = lookup.batch;
+        }
+        if (batch != null) {
+            batch.release();
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private Batch drain() {
+        cancelScheduledFlush();
+        Batch batch = new Batch(pending);
+        pending.forEach(lookup -> lookup.batch = batch);
+        pending = new ArrayList<>();
+        pendingPetIds = 0;
+        return batch;
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        if (batch.call.isDisposed()) {
+            return;
+        }
+        batchSize.record(batch.lookups.size());
+        Set<Integer> petIds = new LinkedHashSet<>();
+        batch.lookups.forEach(lookup -> petIds.addAll(lookup.petIds));
+        batch.call.update(visitsServiceClient.getVisitsForPets(List.copyOf(petIds))
+            .defaultIfEmpty(new Visits())
+            .subscribe(
+                visits -> split(batch.lookups, visits),
+                error -> batch.lookups.forEach(lookup -> lookup.sink.error(error))));
+    }
+
+    private void split(List<PendingLookup> lookups, Visits visits) {
+        Map<Integer, List<VisitDetails>> visitsByPetId = visits.items().stream()
+            .filter(visit -> visit.petId() != null)
+            .collect(groupingBy(VisitDetails::petId));
+        lookups.forEach(lookup -> lookup.sink.success(new Visits(lookup.petIds.stream()
+            .distinct()
+            .map(visitsByPetId::get)
+            .filter(Objects::nonNull)
+            .flatMap(List::stream)
+            .toList())));
+    }
+
+    private static final class PendingLookup {
+
+        private final List<Integer> petIds;
+
+        private final MonoSink<Visits> sink;
+
+        /**
+         * Set under the lock once the lookup has left {@code pending}.
+         */
+        private Batch batch;
+
+        PendingLookup(List<Integer> petIds, MonoSink<Visits> sink) {
+            this.petIds = petIds;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * The lookups sent in one call, which is cancelled when the last of them is.
+     */
+    private static final class Batch {
+
+        private final List<PendingLookup> lookups;
+
+        private final AtomicInteger live;
+
+        private final Disposable.Swap call = Disposables.swap();
+
+        Batch(List<PendingLookup> lookups) {
+            this.lookups = lookups;
+            this.live = new AtomicInteger(lookups.size());
+        }
+
+        void release() {
+            if (live.decrementAndGet() == 0) {
+                call.dispose();
+            }
+        }
+    }
+}
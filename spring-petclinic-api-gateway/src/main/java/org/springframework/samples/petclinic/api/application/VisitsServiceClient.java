@@ -16,42 +16,20 @@
 package org.springframework.samples.petclinic.api.application;
 
 import org.springframework.samples.petclinic.api.dto.Visits;
-import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 
-import static java.util.stream.Collectors.joining;
-
 /**
- * @author Maciej Szarlinski
+ * Looks up the visits of pets in visits-service, over HTTP by default or over RSocket when
+ * {@code gateway.visits.transport.type} is {@code rsocket}.
+ *
+ * @see HttpVisitsServiceClient
+ * @see RSocketVisitsServiceClient
  */
-@Component
-public class VisitsServiceClient {
-
-    // Could be changed for testing purpose
-    private String hostname = "http://visits-service/";
-
-    private final WebClient.Builder webClientBuilder;
-
-    public VisitsServiceClient(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
-    }
-
-    public Mono<Visits> getVisitsForPets(final List<Integer> petIds) {
-        return webClientBuilder.build()
-            .get()
-            .uri(hostname + "pets/visits?petId={petId}", joinIds(petIds))
-            .retrieve()
-            .bodyToMono(Visits.class);
-    }
+public interface VisitsServiceClient {
 
-    private String joinIds(List<Integer> petIds) {
-        return petIds.stream().map(Object::toString).collect(joining(","));
-    }
+    String SERVICE_ID = "visits-service";
 
-    void setHostname(String hostname) {
-        this.hostname = hostname;
-    }
+    Mono<Visits> getVisitsForPets(List<Integer> petIds);
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.samples.petclinic.api.system.TokenBudget;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+
+/**
+ * Retries failed safe requests of a route as long as retries stay within a budget.
+ * <p>
+ * Every successful response deposits {@link Config#getBudgetRatio()} of a token into the route's
+ * {@link TokenBudget} and every retry withdraws a whole one, so during a partial outage retries add at most
+ * that fraction to the downstream load instead of multiplying it. Retries wait a fully jittered exponential
+ * backoff. Only {@code GET}, {@code HEAD} and {@code OPTIONS} are ever retried, whatever the configured methods.
+ * <p>
+ * Usage: {@code - name: BudgetedRetry} with the {@link Config} properties as {@code args}.
+ */
+@Component
+public class BudgetedRetryGatewayFilterFactory extends AbstractGatewayFilterFactory<BudgetedRetryGatewayFilterFactory.Config> {
+
+    private static final Set<HttpMethod> SAFE_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final MeterRegistry meterRegistry;
+
+    public BudgetedRetryGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        RouteRetries retries = new RouteRetries(config, meterRegistry);
+        return (exchange, chain) -> {
+            if (!isRetryable(config, exchange.getRequest().getMethod())) {
+                return chain.filter(exchange);
+            }
+            return attempt(exchange, chain, retries, 0);
+        };
+    }
+
+    private static boolean isRetryable(Config config, HttpMethod method) {
+        return SAFE_METHODS.contains(method) && config.getMethods().contains(method);
+    }
+
+    private Mono<Void> attempt(ServerWebExchange exchange, GatewayFilterChain chain, RouteRetries retries, int iteration) {
+        return chain.filter(exchange)
+            .thenReturn(Optional.<Throwable>empty())
+            .onErrorResume(e -> Mono.just(Optional.of(e)))
+            .flatMap(error -> {
+                boolean failed = error.map(retries::isRetryableException)
+                    .orElseGet(() -> retries.isRetryableStatus(exchange.getResponse().getStatusCode()));
+                if (!failed) {
+                    retries.budget.deposit();
+                    if (iteration > 0) {
+                        retries.succeeded.increment();
+                    }
+                } else if (iteration < retries.config.getRetries() && !exchange.getResponse().isCommitted()) {
+                    if (retries.budget.tryWithdraw()) {
+                        retries.attempted.increment();
+                        reset(exchange);
+                        return Mono.delay(backoff(retries.config, iteration))
+                            .then(attempt(exchange, chain, retries, iteration + 1));
+                    }
+                    retries.denied.increment();
+                }
+                return error.map(Mono::<Void>error).orElseGet(Mono::empty);
+            });
+    }
+
+    /**
+     * Full jitter: uniform between zero and the exponential backoff of the iteration, capped at the maximum.
+     */
+    static Duration backoff(Config config, int iteration) {
+        long ceiling = Math.min(config.getMaxBackoff().toMillis(), config.getFirstBackoff().toMillis() << Math.min(iteration, 30));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Releases the connection of the failed attempt and lets the routing filter send the request again.
+     */
+    private static void reset(ServerWebExchange exchange) {
+        Connection connection = exchange.getAttribute(CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+            exchange.getAttributes().remove(CLIENT_RESPONSE_CONN_ATTR);
+        }
+        ServerWebExchangeUtils.reset(exchange);
+    }
+
+    private static class RouteRetries {
+
+        private final Config config;
+
+        private final TokenBudget budget;
+
+        private final Counter attempted;
+
+        private final Counter denied;
+
+        private final Counter succeeded;
+
+        RouteRetries(Config config, MeterRegistry meterRegistry) {
+            this.config = config;
+            this.budget = new TokenBudget(config.getBudgetRatio(), config.getBudgetBurst());
+            this.attempted = retryCounter(meterRegistry, config.getRouteId(), "attempted");
+            this.denied = retryCounter(meterRegistry, config.getRouteId(), "denied");
+            this.succeeded = retryCounter(meterRegistry, config.getRouteId(), "succeeded");
+        }
+
+        private static Counter retryCounter(MeterRegistry meterRegistry, String routeId, String result) {
+            return Counter.builder("gateway.retry.requests")
+                .description("Retries sent, denied by the retry budget, or answered successfully")
+                .tag("route", String.valueOf(routeId))
+                .tag("result", result)
+                .register(meterRegistry);
+        }
+
+        boolean isRetryableStatus(HttpStatusCode status) {
+            return status != null && config.getStatuses().stream().anyMatch(retryable -> retryable.value() == status.value());
+        }
+
+        boolean isRetryableException(Throwable e) {
+            return config.getExceptions().stream().anyMatch(type -> type.isInstance(e));
+        }
+
+    }
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        private int retries = 2;
+
+        private List<HttpStatus> statuses = List.of(HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.GATEWAY_TIMEOUT);
+
+        private List<HttpMethod> methods = List.of(HttpMethod.GET, HttpMethod.HEAD);
+
+        private List<Class<? extends Throwable>> exceptions = List.of(IOException.class, TimeoutException.class);
+
+        private Duration firstBackoff = Duration.ofMillis(20);
+
+        private Duration maxBackoff = Duration.ofMillis(500);
+
+        private double budgetRatio = 0.1;
+
+        private int budgetBurst = 10;
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public void setRetries(int retries) {
+            this.retries = retries;
+        }
+
+        public List<HttpStatus> getStatuses() {
+            return statuses;
+        }
+
+        public void setStatuses(List<HttpStatus> statuses) {
+            this.statuses = statuses;
+        }
+
+        public List<HttpMethod> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<HttpMethod> methods) {
+            this.methods = methods;
+        }
+
+        public List<Class<? extends Throwable>> getExceptions() {
+            return exceptions;
+        }
+
+        public void setExceptions(List<Class<? extends Throwable>> exceptions) {
+            this.exceptions = exceptions;
+        }
+
+        public Duration getFirstBackoff() {
+            return firstBackoff;
+        }
+
+        public void setFirstBackoff(Duration firstBackoff) {
+            this.firstBackoff = firstBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        /**
+         * Retries allowed per successful response, e.g. 0.1 for at most 10% extra load.
+         */
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        /**
+         * Retries that can be saved up during quiet periods.
+         */
+        public int getBudgetBurst() {
+            return budgetBurst;
+        }
+
+        public void setBudgetBurst(int budgetBurst) {
+            this.budgetBurst = budgetBurst;
+        }
+    }
+}
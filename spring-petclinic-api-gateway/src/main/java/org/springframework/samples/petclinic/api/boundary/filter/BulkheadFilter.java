@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.api.system.BulkheadProperties;
+import org.springframework.samples.petclinic.api.system.PriorityBulkheads;
+import org.springframework.samples.petclinic.api.system.PriorityBulkheads.BulkheadFullException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Runs every routed request inside the bulkhead of its route, answering {@code 503 Service Unavailable} when the
+ * bulkhead refuses it.
+ */
+@Component
+public class BulkheadFilter implements GlobalFilter, Ordered {
+
+    private final BulkheadProperties properties;
+
+    private final PriorityBulkheads bulkheads;
+
+    public BulkheadFilter(BulkheadProperties properties, PriorityBulkheads bulkheads) {
+        this.properties = properties;
+        this.bulkheads = bulkheads;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        if (!properties.enabled() || route == null) {
+            return chain.filter(exchange);
+        }
+        return bulkheads.acquire(route.getId())
+            .flatMap(permit -> chain.filter(exchange).doFinally(signal -> permit.release()))
+            .onErrorResume(BulkheadFullException.class, e -> {
+                exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                return exchange.getResponse().setComplete();
+            });
+    }
+
+    /**
+     * Runs after the adaptive concurrency limit, so that requests it sheds do not queue here first.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 3;
+    }
+}
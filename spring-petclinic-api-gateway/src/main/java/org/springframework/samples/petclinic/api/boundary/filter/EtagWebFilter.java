@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Adds a weak {@code ETag}, the MD5 digest of the body, to successful JSON responses of GET requests and
+ * answers {@code 304 Not Modified} without a body when it matches the request's {@code If-None-Match}. The
+ * digest is taken before the server compresses the response, so the gzip and identity variants share it, which
+ * a strong validator must not do.
+ * <p>
+ * The body is buffered to compute the digest. Streamed responses are left alone: those with a streaming media
+ * type, and those of handlers that set {@link #STREAMING_ATTR}.
+ * <p>
+ * As a {@link WebFilter} it covers the proxied routes as well as {@code ApiGatewayController}. The body still has
+ * to be produced, so this saves bandwidth rather than downstream work. An {@code ETag} set by the downstream
+ * service is kept and honoured as is.
+ */
+@Component
+public class EtagWebFilter implements WebFilter, Ordered {
+
+    /**
+     * Exchange attribute telling that the handler writes its body as it is produced, so that it is not buffered.
+     */
+    public static final String STREAMING_ATTR = EtagWebFilter.class.getName() + ".streaming";
+
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(
+        MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM, new MediaType("application", "stream+json"));
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!HttpMethod.GET.equals(exchange.getRequest().getMethod())) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange.mutate().response(new EtagResponse(exchange)).build());
+    }
+
+    /**
+     * Runs first so that it sees the final response body.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static class EtagResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+
+        EtagResponse(ServerWebExchange exchange) {
+            super(exchange.getResponse());
+            this.exchange = exchange;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!isEligible()) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(body).flatMap(joined -> {
+                String etag = getHeaders().getETag() != null ? getHeaders().getETag() : etag(joined);
+                if (exchange.checkNotModified(etag)) {
+                    DataBufferUtils.release(joined);
+                    getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+                    getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+                    return getDelegate().setComplete();
+                }
+                getHeaders().setContentLength(joined.readableByteCount());
+                return getDelegate().writeWith(Mono.just(joined));
+            });
+        }
+
+        private boolean isEligible() {
+            MediaType contentType = getHeaders().getContentType();
+            HttpStatusCode status = getStatusCode();
+            return (status == null || status.value() == 200)
+                && !Boolean.TRUE.equals(exchange.getAttribute(STREAMING_ATTR))
+                && contentType != null
+                && STREAMING_MEDIA_TYPES.stream().noneMatch(streaming -> streaming.isCompatibleWith(contentType))
+                && (MediaType.APPLICATION_JSON.isCompatibleWith(contentType) || contentType.getSubtype().endsWith("+json"));
+        }
+
+        private static String etag(DataBuffer body) {
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                try (DataBuffer.ByteBufferIterator buffers = body.readableByteBuffers()) {
+                    buffers.forEachRemaining(md5::update);
+                }
+                return "W/\"0" + HexFormat.of().formatHex(md5.digest()) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycleValidator;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.samples.petclinic.api.application.RequestHedger;
+import org.springframework.samples.petclinic.api.application.RequestHedgers;
+import org.springframework.samples.petclinic.api.system.LatencyAwareLoadBalancer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * Hedges idempotent GET requests of an {@code lb://} route under the {@link RequestHedger} of the target service,
+ * so that a slow instance can be raced by another one. Each attempt runs the rest of the filter chain (load
+ * balancing, Netty routing and response writing) on its own copy of the exchange attributes and of the response
+ * status and headers; the first attempt to write its response claims the real one and streams its body through,
+ * and the other attempt is cancelled. The hedge asks the load balancer to skip the instance the primary went to.
+ * Other methods are routed as usual.
+ * <p>
+ * Usage in a route: {@code - Hedge}. Whether hedges are actually sent is driven by the service's
+ * {@code gateway.hedging.policies} entry.
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+    private final RequestHedgers hedgers;
+
+    private final LoadBalancerClientFactory clientFactory;
+
+    public HedgeGatewayFilterFactory(RequestHedgers hedgers, LoadBalancerClientFactory clientFactory) {
+        this.hedgers = hedgers;
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * Runs once the route URL is known, inside the adaptive timeout, but before the load balancer has picked a
+     * single instance for it.
+     */
+    @Override
+    public GatewayFilter apply(Object config) {
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+            if (!HttpMethod.GET.equals(exchange.getRequest().getMethod()) || url == null || !"lb".equals(url.getScheme())) {
+                return chain.filter(exchange);
+            }
+            String serviceId = url.getHost();
+            RequestHedger hedger = hedgers.forService(serviceId);
+            if (!hedger.isEnabled()) {
+                return chain.filter(exchange);
+            }
+            Race race = new Race(exchange, chain, serviceId);
+            return hedger.hedge(race::primary, race::hedge)
+                .flatMap(Attempt::written);
+        }, RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER + 2);
+    }
+
+    /**
+     * The attempts of one exchange, of which the first to write its response wins.
+     */
+    private class Race {
+
+        private final ServerWebExchange exchange;
+
+        private final GatewayFilterChain chain;
+
+        private final String serviceId;
+
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+
+        private volatile Attempt primary;
+
+        Race(ServerWebExchange exchange, GatewayFilterChain chain, String serviceId) {
+            this.exchange = exchange;
+            this.chain = chain;
+            this.serviceId = serviceId;
+        }
+
+        Mono<Attempt> primary() {
+            primary = new Attempt(this, exchange.getRequest(), null);
+            return primary.route();
+        }
+
+        /**
+         * The request body was consumed by the primary, and a GET has none to resend anyway.
+         */
+        Mono<Attempt> hedge() {
+            Response<ServiceInstance> primaryChoice = primary.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            ServiceInstance excluded = primaryChoice != null && primaryChoice.hasServer() ? primaryChoice.getServer() : null;
+            ServerHttpRequest request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+                @Override
+                public Flux<DataBuffer> getBody() {
+                    return Flux.empty();
+                }
+            };
+            return new Attempt(this, request, excluded).route();
+        }
+    }
+
+    private class Attempt extends ServerWebExchangeDecorator {
+
+        private final Race race;
+
+        private final ServerHttpRequest request;
+
+        private final AttemptResponse response;
+
+        private final Map<String, Object> attributes;
+
+        private final Sinks.One<Attempt> claimed = Sinks.one();
+
+        private final Sinks.Empty<Void> written = Sinks.empty();
+
+        private final Disposable.Swap routing = Disposables.swap();
+
+        Attempt(Race race, ServerHttpRequest request, ServiceInstance excluded) {
+            super(race.exchange);
+            this.race = race;
+            this.request = request;
+            this.response = new AttemptResponse(this, race.exchange.getResponse());
+            this.attributes = new ConcurrentHashMap<>(race.exchange.getAttributes());
+            if (excluded != null) {
+                attributes.put(LatencyAwareLoadBalancer.EXCLUDED_INSTANCE_ATTR, excluded);
+            }
+        }
+
+        @Override
+        public ServerHttpRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public ServerHttpResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Emits this attempt once it has claimed the response, while its body is still being written.
+         */
+        Mono<Attempt> route() {
+            return Mono.deferContextual(context -> {
+                routing.update(race.chain.filter(this)
+                    .doOnCancel(this::discard)
+                    .contextWrite(context)
+                    .subscribe(null, this::failed, this::completed));
+                return claimed.asMono().doOnCancel(this::abandon);
+            });
+        }
+
+        Mono<Void> written() {
+            return written.asMono().doOnCancel(routing::dispose);
+        }
+
+        boolean claim() {
+            if (!race.winner.compareAndSet(null, this)) {
+                return race.winner.get() == this;
+            }
+            ServerHttpResponse target = race.exchange.getResponse();
+            if (response.status != null) {
+                target.setStatusCode(response.status);
+            }
+            target.getHeaders().clear();
+            target.getHeaders().putAll(response.headers);
+            race.exchange.getAttributes().putAll(attributes);
+            claimed.tryEmitValue(this);
+            return true;
+        }
+
+        private boolean won() {
+            return race.winner.get() == this;
+        }
+
+        private void failed(Throwable error) {
+            if (won()) {
+                written.tryEmitError(error);
+            } else {
+                claimed.tryEmitError(error);
+            }
+        }
+
+        private void completed() {
+            if (won()) {
+                written.tryEmitEmpty();
+            } else {
+                claimed.tryEmitEmpty();
+            }
+        }
+
+        private void abandon() {
+            if (!won()) {
+                routing.dispose();
+            }
+        }
+
+        /**
+         * The gateway only reports successful or failed routing to the load balancer, a cancelled one would
+         * stay counted as in flight on its instance.
+         */
+        @SuppressWarnings("unchecked")
+        private void discard() {
+            Response<ServiceInstance> lbResponse = getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            if (lbResponse == null || !lbResponse.hasServer()) {
+                return;
+            }
+            CompletionContext<Object, ServiceInstance, Object> completion = new CompletionContext<>(
+                CompletionContext.Status.DISCARD, new DefaultRequest<>(new RequestDataContext()), lbResponse);
+            LoadBalancerLifecycleValidator.getSupportedLifecycleProcessors(
+                    clientFactory.getInstances(race.serviceId, LoadBalancerLifecycle.class),
+                    RequestDataContext.class, ResponseData.class, ServiceInstance.class)
+                .forEach(lifecycle -> lifecycle.onComplete(completion));
+        }
+    }
+
+    /**
+     * Keeps the status and headers to itself until its attempt claims the real response.
+     */
+    private static class AttemptResponse extends ServerHttpResponseDecorator {
+
+        private final Attempt attempt;
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        private volatile HttpStatusCode status;
+
+        AttemptResponse(Attempt attempt, ServerHttpResponse delegate) {
+            super(delegate);
+            this.attempt = attempt;
+            this.headers.putAll(delegate.getHeaders());
+        }
+
+        @Override
+        public boolean setStatusCode(HttpStatusCode status) {
+            this.status = status;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean setRawStatusCode(Integer value) {
+            return setStatusCode(value != null ? HttpStatusCode.valueOf(value) : null);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status != null ? status : getDelegate().getStatusCode();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Integer getRawStatusCode() {
+            HttpStatusCode statusCode = getStatusCode();
+            return statusCode != null ? statusCode.value() : null;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return Mono.defer(() -> attempt.claim() ? getDelegate().writeWith(body) : Mono.error(new AttemptLost()));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return Mono.defer(() -> attempt.claim() ? getDelegate().writeAndFlushWith(body) : Mono.error(new AttemptLost()));
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return Mono.defer(() -> attempt.claim() ? getDelegate().setComplete() : Mono.error(new AttemptLost()));
+        }
+    }
+
+    /**
+     * Fails the routing of an attempt that got its response after the other one.
+     */
+    private static class AttemptLost extends RuntimeException {
+
+        AttemptLost() {
+            super("Another attempt answered first", null, false, false);
+        }
+    }
+}
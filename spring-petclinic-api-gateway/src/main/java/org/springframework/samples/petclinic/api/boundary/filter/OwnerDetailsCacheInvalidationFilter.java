@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsCache;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evicts cached owner details whenever a POST or PUT touching an owner, its pets or its visits is routed
+ * to customers-service or visits-service.
+ */
+@Component
+public class OwnerDetailsCacheInvalidationFilter implements GlobalFilter, Ordered {
+
+    /**
+     * Matches {@code /api/customer/owners/{ownerId}[/pets/{petId}]} and
+     * {@code /api/visit/owners/{ownerId}/pets/{petId}/visits}. The owner segment may be a wildcard.
+     */
+    private static final Pattern OWNER_PATH = Pattern.compile("^/api/(?:customer|visit)/owners/([^/]+)(?:/pets/(\\d+))?");
+
+    private final OwnerDetailsCache ownerDetailsCache;
+
+    public OwnerDetailsCacheInvalidationFilter(OwnerDetailsCache ownerDetailsCache) {
+        this.ownerDetailsCache = ownerDetailsCache;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (!HttpMethod.POST.equals(method) && !HttpMethod.PUT.equals(method)) {
+            return chain.filter(exchange);
+        }
+        Matcher matcher = OWNER_PATH.matcher(exchange.getRequest().getPath().pathWithinApplication().value());
+        if (!matcher.find()) {
+            return chain.filter(exchange);
+        }
+        String ownerId = matcher.group(1);
+        String petId = matcher.group(2);
+        return chain.filter(exchange)
+            .doFinally(signal -> evict(ownerId, petId));
+    }
+
+    private void evict(String ownerId, String petId) {
+        if (ownerId.chars().allMatch(Character::isDigit)) {
+            ownerDetailsCache.evictOwner(Integer.parseInt(ownerId));
+        } else if (petId != null) {
+            ownerDetailsCache.evictOwnerOfPet(Integer.parseInt(petId));
+        }
+    }
+
+    /**
+     * Must see the original request path, before the {@code StripPrefix} route filters rewrite it.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
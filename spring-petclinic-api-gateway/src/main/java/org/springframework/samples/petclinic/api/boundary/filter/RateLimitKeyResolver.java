@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.samples.petclinic.api.system.RateLimitProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Identifies the client a {@code RequestRateLimiter} counts a request against, as selected by
+ * {@code gateway.rate-limit.key-resolver}. An empty key is refused by the filter.
+ */
+@Component
+public class RateLimitKeyResolver implements KeyResolver {
+
+    private final RateLimitProperties properties;
+
+    public RateLimitKeyResolver(RateLimitProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return Mono.justOrEmpty(switch (properties.keyResolver()) {
+            case IP -> clientAddress(exchange);
+            case PATH -> exchange.getRequest().getPath().pathWithinApplication().value();
+            case HEADER -> exchange.getRequest().getHeaders().getFirst(properties.keyHeader());
+        });
+    }
+
+    private static String clientAddress(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null) {
+            return null;
+        }
+        return remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache.CachedResponse;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache.RouteCache;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers GET requests of a route from complete responses kept in the gateway, without a downstream hop.
+ * <p>
+ * Only {@code 200 OK} responses without cookies are stored. The downstream {@code Cache-Control} is honoured:
+ * {@code no-store}, {@code private} and {@code no-cache} responses are not cached, and {@code s-maxage} or
+ * {@code max-age} shorten the route's time to live. Entries are keyed by path, query and the request headers
+ * listed in {@link Config#getVary()}; a response that varies on any other header is not cached. Requests with
+ * {@code Authorization} or {@code Cache-Control: no-store} bypass the cache, {@code no-cache} ones refresh it.
+ * <p>
+ * Usage: {@code - name: ResponseCache} with the {@link Config} properties as {@code args}. The cached entries
+ * can be listed and purged through the {@code responsecache} actuator endpoint.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final List<String> HOP_BY_HOP_HEADERS = List.of(
+        HttpHeaders.CONNECTION, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONTENT_LENGTH, "Keep-Alive", CACHE_STATUS_HEADER);
+
+    private final GatewayResponseCache responseCache;
+
+    public ResponseCacheGatewayFilterFactory(GatewayResponseCache responseCache) {
+        super(Config.class);
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Runs right after the global filters that only look at writes, so that hits skip the concurrency limit,
+     * the bulkheads and the rate limiter.
+     */
+    @Override
+    public GatewayFilter apply(Config config) {
+        RouteCache cache = responseCache.forRoute(String.valueOf(config.getRouteId()), config.getTtl(), config.getMaximumSize());
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            Map<String, String> cacheControl = directives(request.getHeaders().getCacheControl());
+            if (!HttpMethod.GET.equals(request.getMethod())
+                || request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)
+                || cacheControl.containsKey("no-store")) {
+                return chain.filter(exchange);
+            }
+            String key = key(request, config.getVary());
+            if (!cacheControl.containsKey("no-cache") && !"0".equals(cacheControl.get("max-age"))) {
+                CachedResponse cached = cache.get(key);
+                if (cached != null) {
+                    return replay(exchange.getResponse(), cached);
+                }
+            }
+            return chain.filter(exchange.mutate().response(new CachingResponse(exchange.getResponse(), cache, key, config)).build());
+        }, Ordered.HIGHEST_PRECEDENCE + 1);
+    }
+
+    static String key(ServerHttpRequest request, List<String> vary) {
+        StringBuilder key = new StringBuilder(request.getPath().value());
+        if (request.getURI().getRawQuery() != null) {
+            key.append('?').append(request.getURI().getRawQuery());
+        }
+        for (String header : vary) {
+            key.append(' ').append(header.toLowerCase(Locale.ROOT)).append('=')
+                .append(String.join(",", request.getHeaders().getOrEmpty(header)));
+        }
+        return key.toString();
+    }
+
+    private static Mono<Void> replay(ServerHttpResponse response, CachedResponse cached) {
+        response.setStatusCode(cached.status());
+        response.getHeaders().putAll(cached.headers());
+        response.getHeaders().set(HttpHeaders.AGE, String.valueOf(cached.age(Instant.now()).toSeconds()));
+        response.getHeaders().set(CACHE_STATUS_HEADER, "HIT");
+        response.getHeaders().setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    /**
+     * @return how long the response may be served from the cache, or {@code null} when it must not be stored
+     */
+    static Duration cacheableFor(HttpStatusCode status, HttpHeaders headers, Config config) {
+        if (status == null || status.value() != 200 || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return null;
+        }
+        Map<String, String> cacheControl = directives(headers.getCacheControl());
+        if (cacheControl.containsKey("no-store") || cacheControl.containsKey("private") || cacheControl.containsKey("no-cache")) {
+            return null;
+        }
+        for (String varied : headers.getVary()) {
+            if (config.getVary().stream().noneMatch(varied::equalsIgnoreCase)) {
+                return null;
+            }
+        }
+        Duration ttl = config.getTtl();
+        String maxAge = cacheControl.getOrDefault("s-maxage", cacheControl.get("max-age"));
+        if (maxAge != null) {
+            try {
+                Duration upstreamTtl = Duration.ofSeconds(Long.parseLong(maxAge));
+                ttl = upstreamTtl.compareTo(ttl) < 0 ? upstreamTtl : ttl;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ttl.isZero() || ttl.isNegative() ? null : ttl;
+    }
+
+    private static Map<String, String> directives(String cacheControl) {
+        Map<String, String> directives = new HashMap<>();
+        if (!StringUtils.hasText(cacheControl)) {
+            return directives;
+        }
+        for (String directive : cacheControl.split(",")) {
+            String[] nameAndValue = directive.split("=", 2);
+            directives.put(nameAndValue[0].trim().toLowerCase(Locale.ROOT),
+                nameAndValue.length > 1 ? nameAndValue[1].trim().replace("\"", "") : "");
+        }
+        return directives;
+    }
+
+    private static class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final RouteCache cache;
+
+        private final String key;
+
+        private final Config config;
+
+        CachingResponse(ServerHttpResponse delegate, RouteCache cache, String key, Config config) {
+            super(delegate);
+            this.cache = cache;
+            this.key = key;
+            this.config = config;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            Duration ttl = cacheableFor(getStatusCode(), getHeaders(), config);
+            if (ttl == null) {
+                return super.writeWith(body);
+            }
+            HttpHeaders headers = new HttpHeaders();
+            getHeaders().forEach((name, values) -> {
+                if (HOP_BY_HOP_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                    headers.put(name, List.copyOf(values));
+                }
+            });
+            getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+            return DataBufferUtils.join(body).flatMap(joined -> {
+                byte[] bytes = new byte[joined.readableByteCount()];
+                joined.read(bytes);
+                DataBufferUtils.release(joined);
+                cache.put(key, new CachedResponse(getStatusCode(), HttpHeaders.readOnlyHttpHeaders(headers), bytes, Instant.now(), ttl));
+                return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+            });
+        }
+    }
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        private Duration ttl = Duration.ofMinutes(1);
+
+        private long maximumSize = 100;
+
+        private List<String> vary = List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        /**
+         * Longest time a response is served from the cache.
+         */
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        /**
+         * Upper bound on the number of responses cached for the route.
+         */
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        /**
+         * Request headers whose values select a different cached response.
+         */
+        public List<String> getVary() {
+            return vary;
+        }
+
+        public void setVary(List<String> vary) {
+            this.vary = vary;
+        }
+    }
+}
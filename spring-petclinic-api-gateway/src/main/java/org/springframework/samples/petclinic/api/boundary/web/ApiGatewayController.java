@@ -17,17 +17,37 @@ package org.springframework.samples.petclinic.api.boundary.web;
 
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.samples.petclinic.api.application.LastKnownVisits;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsCache;
+import org.springframework.samples.petclinic.api.application.RequestCoalescer;
+import org.springframework.samples.petclinic.api.application.Snapshot;
+import org.springframework.samples.petclinic.api.application.VetsServiceClient;
+import org.springframework.samples.petclinic.api.application.VisitsBatchDispatcher;
 import org.springframework.samples.petclinic.api.application.VisitsServiceClient;
 import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.OwnerPage;
+import org.springframework.samples.petclinic.api.dto.OwnerPage.Section;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
 import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.OwnerPageProperties;
+import org.springframework.samples.petclinic.web.SparseFieldsets;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 /**
@@ -37,46 +57,208 @@ import java.util.function.Function;
 @RequestMapping("/api/gateway")
 public class ApiGatewayController {
 
+    /**
+     * Set when visits-service is unavailable and the visits are the last ones read, as of the given date.
+     */
+    static final String VISITS_STALE_SINCE_HEADER = "X-Visits-Stale-Since";
+
     private final CustomersServiceClient customersServiceClient;
 
     private final VisitsServiceClient visitsServiceClient;
 
+    private final VisitsBatchDispatcher visitsBatchDispatcher;
+
     private final ReactiveCircuitBreakerFactory cbFactory;
 
+    private final OwnerDetailsCache ownerDetailsCache;
+
+    private final RequestCoalescer<Integer, Snapshot<OwnerDetails>> ownerDetailsCoalescer;
+
+    private final LastKnownVisits lastKnownVisits;
+
+    private final VetsServiceClient vetsServiceClient;
+
+    private final OwnerPageProperties ownerPageProperties;
+
     public ApiGatewayController(CustomersServiceClient customersServiceClient,
                                 VisitsServiceClient visitsServiceClient,
-                                ReactiveCircuitBreakerFactory cbFactory) {
+                                VisitsBatchDispatcher visitsBatchDispatcher,
+                                ReactiveCircuitBreakerFactory cbFactory,
+                                OwnerDetailsCache ownerDetailsCache,
+                                RequestCoalescer<Integer, Snapshot<OwnerDetails>> ownerDetailsCoalescer,
+                                LastKnownVisits lastKnownVisits,
+                                VetsServiceClient vetsServiceClient,
+                                OwnerPageProperties ownerPageProperties) {
         this.customersServiceClient = customersServiceClient;
         this.visitsServiceClient = visitsServiceClient;
+        this.visitsBatchDispatcher = visitsBatchDispatcher;
         this.cbFactory = cbFactory;
+        this.ownerDetailsCache = ownerDetailsCache;
+        this.ownerDetailsCoalescer = ownerDetailsCoalescer;
+        this.lastKnownVisits = lastKnownVisits;
+        this.vetsServiceClient = vetsServiceClient;
+        this.ownerPageProperties = ownerPageProperties;
     }
 
+    /**
+     * @param fields properties to return, see {@link SparseFieldsets}
+     */
     @GetMapping(value = "owners/{ownerId}")
-    public Mono<OwnerDetails> getOwnerDetails(final @PathVariable int ownerId) {
+    public Mono<MappingJacksonValue> getOwnerDetails(final @PathVariable int ownerId,
+                                                     final @RequestParam(required = false) String fields,
+                                                     ServerHttpResponse response) {
+        return ownerDetailsCache.get(ownerId)
+            .map(Snapshot::fresh)
+            .switchIfEmpty(ownerDetailsCoalescer.execute(ownerId, () -> loadOwnerDetails(ownerId)))
+            .map(owner -> SparseFieldsets.select(markStaleness(owner, response), fields));
+    }
+
+    /**
+     * Everything the owner page shows in one round trip: the owner with the visits of the pets, the pet types and
+     * the vets are fetched concurrently, each within its own timeout. A section that is late or failed is marked as
+     * such rather than failing or holding up the page.
+     */
+    @GetMapping(value = "owners/{ownerId}/page")
+    public Mono<OwnerPage> getOwnerPage(final @PathVariable int ownerId, ServerHttpResponse response) {
+        Mono<Section<OwnerDetails>> owner = ownerDetailsCache.get(ownerId)
+            .map(Snapshot::fresh)
+            .switchIfEmpty(ownerDetailsCoalescer.execute(ownerId, () -> loadOwnerDetails(ownerId)))
+            .map(snapshot -> snapshot.isStale()
+                ? Section.stale(markStaleness(snapshot, response))
+                : Section.ok(snapshot.value()));
+        return Mono.zip(
+                section(owner, ownerPageProperties.ownerTimeout()),
+                section(customersServiceClient.getPetTypes().map(Section::ok), ownerPageProperties.petTypesTimeout()),
+                section(vetsServiceClient.getVets().map(Section::ok), ownerPageProperties.vetsTimeout()))
+            .map(sections -> new OwnerPage(sections.getT1(), sections.getT2(), sections.getT3()));
+    }
+
+    private static <T> Mono<Section<T>> section(Mono<Section<T>> section, Duration timeout) {
+        return section
+            .timeout(timeout)
+            .onErrorResume(TimeoutException.class, e -> Mono.just(Section.timeout()))
+            .onErrorResume(e -> Mono.just(Section.failed()))
+            .defaultIfEmpty(Section.failed());
+    }
+
+    /**
+     * Only fully assembled owners are cached: the circuit breaker fallback (owner with last-known or no visits) is not.
+     */
+    private Mono<Snapshot<OwnerDetails>> loadOwnerDetails(int ownerId) {
+        final long cacheGeneration = ownerDetailsCache.generation();
         return customersServiceClient.getOwner(ownerId)
-            .flatMap(owner ->
-                visitsServiceClient.getVisitsForPets(owner.getPetIds())
+            .flatMap(owner -> {
+                List<Integer> petIds = owner.getPetIds();
+                Mono<Visits> visits = petIds.isEmpty()
+                    ? emptyVisitsForPets()
+                    : visitsBatchDispatcher.getVisitsForPets(petIds)
+                        .doOnNext(found -> lastKnownVisits.remember(petIds, found));
+                return visits
+                    .map(addVisitsToOwner(owner))
+                    .doOnNext(details -> ownerDetailsCache.put(ownerId, details, cacheGeneration))
+                    .map(Snapshot::fresh)
                     .transform(it -> {
                         ReactiveCircuitBreaker cb = cbFactory.create("getOwnerDetails");
-                        return cb.run(it, throwable -> emptyVisitsForPets());
-                    })
-                    .map(addVisitsToOwner(owner))
-            );
+                        return cb.run(it, throwable -> visitsFallback(petIds, "getOwnerDetails")
+                            .map(found -> new Snapshot<>(addVisitsToOwner(owner).apply(found.value()), found.staleSince())));
+                    });
+            });
+    }
 
+    /**
+     * Assembles many owners: those in the owner details cache are taken from it, the others are read with one bulk
+     * customers lookup and one visits lookup for all their pets, and cached. Owners are returned in the requested
+     * order; unknown ids are skipped.
+     * <p>
+     * Unlike {@link #getOwnerDetails}, the owners are not loaded through the coalescer: one bulk lookup would have
+     * to wait for the single lookups of other requests.
+     */
+    @GetMapping(value = "owners", params = "ownerId")
+    public Mono<List<OwnerDetails>> getOwnersDetails(final @RequestParam("ownerId") List<Integer> ownerIds,
+                                                     ServerHttpResponse response) {
+        List<Integer> distinctIds = ownerIds.stream().distinct().toList();
+        return ownerDetailsCache.getAll(distinctIds)
+            .flatMap(cached -> {
+                List<Integer> missing = distinctIds.stream()
+                    .filter(ownerId -> !cached.containsKey(ownerId))
+                    .toList();
+                Mono<List<OwnerDetails>> loaded = missing.isEmpty()
+                    ? Mono.just(List.of())
+                    : loadOwnersDetails(missing).map(snapshot -> markStaleness(snapshot, response));
+                return loaded.map(owners -> {
+                    Map<Integer, OwnerDetails> ownersById = new HashMap<>(cached);
+                    owners.forEach(owner -> ownersById.putIfAbsent(owner.id(), owner));
+                    return distinctIds.stream()
+                        .map(ownersById::get)
+                        .filter(Objects::nonNull)
+                        .toList();
+                });
+            });
     }
 
-    private Function<Visits, OwnerDetails> addVisitsToOwner(OwnerDetails owner) {
+    /**
+     * Like {@link #loadOwnerDetails}, only fully assembled owners are cached.
+     */
+    private Mono<Snapshot<List<OwnerDetails>>> loadOwnersDetails(List<Integer> ownerIds) {
+        final long cacheGeneration = ownerDetailsCache.generation();
+        return customersServiceClient.getOwners(ownerIds)
+            .flatMap(owners -> {
+                List<Integer> petIds = owners.stream()
+                    .flatMap(owner -> owner.getPetIds().stream())
+                    .toList();
+                Mono<Visits> visits = petIds.isEmpty()
+                    ? emptyVisitsForPets()
+                    : visitsBatchDispatcher.getVisitsForPets(petIds)
+                        .doOnNext(found -> lastKnownVisits.remember(petIds, found));
+                return visits
+                    .map(addVisitsToOwners(owners))
+                    .doOnNext(details -> details.forEach(owner -> ownerDetailsCache.put(owner.id(), owner, cacheGeneration)))
+                    .map(Snapshot::fresh)
+                    .transform(it -> {
+                        ReactiveCircuitBreaker cb = cbFactory.create("getOwnersDetails");
+                        return cb.run(it, throwable -> visitsFallback(petIds, "getOwnersDetails")
+                            .map(found -> new Snapshot<>(addVisitsToOwners(owners).apply(found.value()), found.staleSince())));
+                    });
+            });
+    }
+
+    /**
+     * Serves the last-known visits of the pets while refreshing them in the background through the same circuit
+     * breaker, which refuses the refresh for as long as it is open. Pets never seen before get no visits.
+     */
+    private Mono<Snapshot<Visits>> visitsFallback(List<Integer> petIds, String circuitBreakerId) {
+        Optional<Snapshot<Visits>> lastKnown = lastKnownVisits.lookup(petIds);
+        if (lastKnown.isEmpty()) {
+            return emptyVisitsForPets().map(Snapshot::fresh);
+        }
+        lastKnownVisits.revalidate(petIds,
+            () -> cbFactory.create(circuitBreakerId).run(visitsServiceClient.getVisitsForPets(petIds)));
+        return Mono.just(lastKnown.get());
+    }
+
+    private static <T> T markStaleness(Snapshot<T> snapshot, ServerHttpResponse response) {
+        if (snapshot.isStale()) {
+            response.getHeaders().setInstant(VISITS_STALE_SINCE_HEADER, snapshot.staleSince());
+        }
+        return snapshot.value();
+    }
+
+    private Function<Visits, List<OwnerDetails>> addVisitsToOwners(List<OwnerDetails> owners) {
         return visits -> {
-            owner.pets()
-                .forEach(pet -> pet.visits()
-                    .addAll(visits.items().stream()
-                        .filter(v -> v.petId() == pet.id())
-                        .toList())
-                );
-            return owner;
+            Map<Integer, List<VisitDetails>> visitsByPetId = visits.getVisitsByPetId();
+            return owners.stream()
+                .map(owner -> owner.withVisits(visitsByPetId))
+                .toList();
         };
     }
 
+    /**
+     * Leaves the owner read from customers-service untouched: the circuit breaker fallback may assemble it again.
+     */
+    private Function<Visits, OwnerDetails> addVisitsToOwner(OwnerDetails owner) {
+        return visits -> owner.withVisits(visits.getVisitsByPetId());
+    }
+
     private Mono<Visits> emptyVisitsForPets() {
         return Mono.just(new Visits(List.of()));
     }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Serves the fingerprinted script bundle produced by the build-time asset stage, picking its brotli or gzip
+ * variant according to {@code Accept-Encoding}. The file name changes with its content, so it can be cached
+ * for good by browsers and proxies.
+ */
+public class PrecompressedScriptHandler implements HandlerFunction<ServerResponse> {
+
+    private static final MediaType JAVASCRIPT = new MediaType("text", "javascript");
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private static final List<Encoding> ENCODINGS = List.of(new Encoding("br", ".br"), new Encoding("gzip", ".gz"));
+
+    private final String location;
+
+    public PrecompressedScriptHandler(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public Mono<ServerResponse> handle(ServerRequest request) {
+        Resource plain = new ClassPathResource(location + request.path());
+        if (!plain.exists()) {
+            return ServerResponse.notFound().build();
+        }
+        String acceptEncoding = String.join(",", request.headers().header(HttpHeaders.ACCEPT_ENCODING));
+        for (Encoding encoding : ENCODINGS) {
+            Resource variant = new ClassPathResource(location + request.path() + encoding.suffix());
+            if (accepts(acceptEncoding, encoding.name()) && variant.exists()) {
+                return respond(variant).header(HttpHeaders.CONTENT_ENCODING, encoding.name()).bodyValue(variant);
+            }
+        }
+        return respond(plain).bodyValue(plain);
+    }
+
+    private static ServerResponse.BodyBuilder respond(Resource resource) {
+        return ServerResponse.ok()
+            .contentType(JAVASCRIPT)
+            .cacheControl(IMMUTABLE)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /**
+     * Whether the {@code Accept-Encoding} header lists the given coding without ruling it out with {@code q=0}.
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        for (String token : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = token.split(";");
+            if (parts[0].trim().equals(coding)) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].replace(" ", "");
+                    if (parameter.startsWith("q=") && Double.parseDouble(parameter.substring(2)) == 0) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Encoding(String name, String suffix) {
+    }
+}
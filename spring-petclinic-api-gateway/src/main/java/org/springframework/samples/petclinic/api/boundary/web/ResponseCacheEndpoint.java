@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache.RouteCache;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/responsecache}: lists the responses cached by the {@code ResponseCache} route filter and
+ * purges them, all at once or per route.
+ */
+@Component
+@Endpoint(id = "responsecache")
+public class ResponseCacheEndpoint {
+
+    private final GatewayResponseCache responseCache;
+
+    public ResponseCacheEndpoint(GatewayResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @ReadOperation
+    public Map<String, RouteSummary> routes() {
+        Map<String, RouteSummary> routes = new TreeMap<>();
+        responseCache.routes().forEach((routeId, cache) -> routes.put(routeId, new RouteSummary(
+            cache.ttl(), cache.maximumSize(), cache.entries().size(), cache.hitCount(), cache.missCount())));
+        return routes;
+    }
+
+    /**
+     * @return the cached responses of the route, or {@code null} (404) when it is not cached
+     */
+    @ReadOperation
+    public List<Entry> route(@Selector String routeId) {
+        RouteCache cache = responseCache.routes().get(routeId);
+        if (cache == null) {
+            return null;
+        }
+        Instant now = Instant.now();
+        return cache.entries().entrySet().stream()
+            .map(entry -> new Entry(entry.getKey(), entry.getValue().status().value(), entry.getValue().body().length,
+                entry.getValue().age(now), entry.getValue().ttl().minus(entry.getValue().age(now))))
+            .sorted(Comparator.comparing(Entry::key))
+            .toList();
+    }
+
+    @DeleteOperation
+    public void purge() {
+        responseCache.purge();
+    }
+
+    /**
+     * @return {@code null} (404) when the route is not cached
+     */
+    @DeleteOperation
+    public Boolean purgeRoute(@Selector String routeId) {
+        return responseCache.purge(routeId) ? Boolean.TRUE : null;
+    }
+
+    public record RouteSummary(Duration ttl, long maximumSize, int size, long hits, long misses) {
+    }
+
+    public record Entry(String key, int status, int bytes, Duration age, Duration expiresIn) {
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.samples.petclinic.api.application.HttpVisitsServiceClient;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsJsonMerger;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsJsonMerger.OwnerJson;
+import org.springframework.samples.petclinic.api.boundary.filter.EtagWebFilter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Streaming variant of {@code GET /api/gateway/owners/{ownerId}}: the same document, merged at token level by
+ * {@link OwnerDetailsJsonMerger} instead of being decoded into DTOs and encoded again.
+ * <p>
+ * The owner is written as soon as it has been read, and the visits as they are received from visits-service. It
+ * trades the features built on the DTOs for CPU and memory: owners are neither cached nor coalesced, and visits
+ * fall back to none, not to the last known ones, while visits-service is unavailable; if it fails half way, the
+ * document ends with the visits received until then. Visits are always read over HTTP, whatever the configured
+ * visits transport. The response gets no {@code ETag}, which would mean buffering it.
+ */
+@RestController
+@RequestMapping("/api/gateway")
+public class StreamingOwnerDetailsController {
+
+    private final CustomersServiceClient customersServiceClient;
+
+    private final HttpVisitsServiceClient visitsServiceClient;
+
+    private final ReactiveCircuitBreakerFactory cbFactory;
+
+    private final OwnerDetailsJsonMerger merger;
+
+    public StreamingOwnerDetailsController(CustomersServiceClient customersServiceClient,
+                                           HttpVisitsServiceClient visitsServiceClient,
+                                           ReactiveCircuitBreakerFactory cbFactory,
+                                           OwnerDetailsJsonMerger merger) {
+        this.customersServiceClient = customersServiceClient;
+        this.visitsServiceClient = visitsServiceClient;
+        this.cbFactory = cbFactory;
+        this.merger = merger;
+    }
+
+    @GetMapping(value = "owners/{ownerId}/streamed", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> getOwnerDetails(final @PathVariable int ownerId, ServerWebExchange exchange) {
+        exchange.getAttributes().put(EtagWebFilter.STREAMING_ATTR, true);
+        return Flux.usingWhen(
+                customersServiceClient.readOwner(ownerId, merger::readOwner),
+                owner -> merger.merge(owner, visits(owner.petIds()), exchange.getResponse().bufferFactory()),
+                owner -> Mono.fromRunnable(owner::release))
+            .doOnDiscard(OwnerJson.class, OwnerJson::release);
+    }
+
+    private Flux<DataBuffer> visits(List<Integer> petIds) {
+        if (petIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return cbFactory.create("getOwnerDetails")
+            .run(visitsServiceClient.readVisitsForPets(petIds), throwable -> Flux.empty());
+    }
+}
@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.api.dto;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Maciej Szarlinski
@@ -38,6 +39,16 @@ public record OwnerDetails(
             .toList();
     }
 
+    /**
+     * @return a copy of this owner whose pets also have the given visits. The copy is immutable, so that it can be
+     * cached and served to concurrent requests.
+     */
+    public OwnerDetails withVisits(Map<Integer, List<VisitDetails>> visitsByPetId) {
+        List<PetDetails> petsWithVisits = pets.stream()
+            .map(pet -> pet.withVisits(visitsByPetId.getOrDefault(pet.id(), List.of())))
+            .toList();
+        return new OwnerDetails(id, firstName, lastName, address, city, telephone, petsWithVisits);
+    }
 
     public static final class OwnerDetailsBuilder {
         private int id;
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.dto;
+
+import java.util.List;
+
+/**
+ * Everything the owner page shows, assembled by the gateway in one round trip. Each section carries its own
+ * status, so that a slow or failing service leaves the other sections usable.
+ */
+public record OwnerPage(
+    Section<OwnerDetails> owner,
+    Section<List<PetType>> petTypes,
+    Section<List<VetDetails>> vets) {
+
+    /**
+     * @param data {@code null} unless the status is {@link Status#OK} or {@link Status#STALE}
+     */
+    public record Section<T>(Status status, T data) {
+
+        public static <T> Section<T> ok(T data) {
+            return new Section<>(Status.OK, data);
+        }
+
+        public static <T> Section<T> stale(T data) {
+            return new Section<>(Status.STALE, data);
+        }
+
+        public static <T> Section<T> timeout() {
+            return new Section<>(Status.TIMEOUT, null);
+        }
+
+        public static <T> Section<T> failed() {
+            return new Section<>(Status.FAILED, null);
+        }
+    }
+
+    public enum Status {
+        /**
+         * Complete and current.
+         */
+        OK,
+        /**
+         * Complete, but parts of it are the last known ones.
+         */
+        STALE,
+        /**
+         * Not ready within the section's timeout.
+         */
+        TIMEOUT,
+        /**
+         * The service answered with an error or could not be reached.
+         */
+        FAILED
+    }
+}
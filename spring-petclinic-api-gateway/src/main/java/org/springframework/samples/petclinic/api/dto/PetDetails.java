@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.api.dto;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @author Maciej Szarlinski
@@ -35,6 +36,13 @@ public record PetDetails(
         }
     }
 
+    /**
+     * @return an immutable copy of this pet with the given visits added to its own
+     */
+    public PetDetails withVisits(List<VisitDetails> moreVisits) {
+        return new PetDetails(id, name, birthDate, type, Stream.concat(visits.stream(), moreVisits.stream()).toList());
+    }
+
     public static final class PetDetailsBuilder {
         private int id;
         private String name;
@@ -18,5 +18,5 @@ package org.springframework.samples.petclinic.api.dto;
 /**
  * @author Maciej Szarlinski
  */
-public record PetType(String name) {
+public record PetType(Integer id, String name) {
 }
@@ -15,8 +15,13 @@
  */
 package org.springframework.samples.petclinic.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.groupingBy;
 
 
 /**
@@ -28,4 +33,11 @@ public record Visits (
     public Visits() {
         this(new ArrayList<>());
     }
+
+    @JsonIgnore
+    public Map<Integer, List<VisitDetails>> getVisitsByPetId() {
+        return items.stream()
+            .filter(visit -> visit.petId() != null)
+            .collect(groupingBy(VisitDetails::petId));
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Additive-increase / multiplicative-decrease limit of the requests in flight towards one destination.
+ * <p>
+ * A request that fails, or whose round-trip time exceeds {@code rttTolerance} times the smoothed round-trip
+ * time, is a sign of queueing downstream and shrinks the limit by {@code backoffRatio}. Any other request
+ * grows it by one, provided the limit was actually being used. Requests above the limit are refused
+ * straight away instead of joining the queue.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final ConcurrencyLimitProperties properties;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private double smoothedRttNanos;
+
+    public AdaptiveConcurrencyLimit(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+        this.limit = properties.initialLimit();
+    }
+
+    /**
+     * @return the number of requests in flight including this one, or {@code -1} when the limit is reached
+     * and nothing was acquired
+     */
+    public int tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return -1;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return current + 1;
+    }
+
+    /**
+     * Releases a request without learning from it, e.g. when the client went away.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Releases a request and adjusts the limit from its outcome.
+     *
+     * @param inFlightAtStart value returned by {@link #tryAcquire()} for this request
+     */
+    public void release(int inFlightAtStart, long rttNanos, boolean failed) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            boolean congested = smoothedRttNanos > 0 && rttNanos > smoothedRttNanos * properties.rttTolerance();
+            smoothedRttNanos = smoothedRttNanos == 0
+                ? rttNanos
+                : smoothedRttNanos + (rttNanos - smoothedRttNanos) * properties.rttSmoothing();
+            if (failed || congested) {
+                limit = Math.max(properties.minLimit(), limit * properties.backoffRatio());
+            } else if (inFlightAtStart * 2 >= limit) {
+                limit = Math.min(properties.maxLimit(), limit + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Typesafe configuration of the per-route bulkheads.
+ *
+ * @param enabled       whether requests go through the bulkheads at all
+ * @param maxConcurrent requests in flight across all routes; once reached, queued requests are admitted by priority
+ * @param routes        bulkhead of each route id; routes not listed get the defaults of {@link Route}
+ */
+@ConfigurationProperties(prefix = "gateway.bulkhead")
+public record BulkheadProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("100") int maxConcurrent,
+    @DefaultValue Map<String, Route> routes
+) {
+
+    public Route route(String routeId) {
+        return routes.getOrDefault(routeId, Route.DEFAULTS);
+    }
+
+    /**
+     * Order in which queued requests are admitted when the gateway is saturated.
+     */
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    /**
+     * @param maxConcurrent requests of the route in flight at once
+     * @param maxQueue      requests of the route waiting for a slot; beyond it they are refused straight away
+     * @param maxWait       how long a request may wait for a slot before being refused
+     * @param priority      class of the route's requests
+     */
+    public record Route(
+        @DefaultValue("100") int maxConcurrent,
+        @DefaultValue("100") int maxQueue,
+        @DefaultValue("1s") Duration maxWait,
+        @DefaultValue("interactive") Priority priority
+    ) {
+
+        /**
+         * Bulkhead of the routes without one of their own.
+         */
+        static final Route DEFAULTS = DefaultValues.of(Route.class);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the adaptive concurrency limit applied to every gateway route.
+ *
+ * @param enabled          whether excess requests are shed at all
+ * @param initialLimit     in-flight requests allowed per route before any latency was observed
+ * @param minLimit         the limit never shrinks below this value
+ * @param maxLimit         the limit never grows above this value
+ * @param backoffRatio     multiplicative decrease applied to the limit on a slow or failed request
+ * @param rttTolerance     a request slower than this multiple of the smoothed round-trip time counts as congestion
+ * @param rttSmoothing     weight of a new sample in the smoothed round-trip time
+ * @param retryAfter       value of the {@code Retry-After} header sent with a rejection
+ */
+@ConfigurationProperties(prefix = "gateway.concurrency-limit")
+public record ConcurrencyLimitProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("20") int initialLimit,
+    @DefaultValue("5") int minLimit,
+    @DefaultValue("200") int maxLimit,
+    @DefaultValue("0.9") double backoffRatio,
+    @DefaultValue("2.0") double rttTolerance,
+    @DefaultValue("0.05") double rttSmoothing,
+    @DefaultValue("1s") Duration retryAfter
+) {
+}
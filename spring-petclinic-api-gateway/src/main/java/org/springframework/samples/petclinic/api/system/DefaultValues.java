@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Creates the per-service settings records with the values of their {@link DefaultValue} annotations, for the
+ * services that have no entry in the configuration. The defaults are thus only declared on the records, where
+ * they also make it into the configuration metadata.
+ */
+final class DefaultValues {
+
+    private DefaultValues() {
+    }
+
+    static <T> T of(Class<T> type) {
+        return new Binder().bindOrCreate("", Bindable.of(type));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out one dedicated, tuned Reactor Netty connection pool per downstream service.
+ * <p>
+ * Pool metrics are enabled, so Reactor Netty publishes the {@code reactor.netty.connection.provider.*}
+ * gauges (total, active, idle and pending connections) and the pending acquire timer, tagged with the
+ * service id, to the global Micrometer registry that Spring Boot exports to Prometheus. Over HTTP/2 a pooled
+ * connection carries many concurrent requests as streams, so far fewer connections are opened; the
+ * {@code active.streams} and {@code pending.streams} gauges then tell how busy they are.
+ */
+@Component
+public class DownstreamHttpClients implements DisposableBean {
+
+    private final HttpClientPoolProperties properties;
+
+    private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+
+    public DownstreamHttpClients(HttpClientPoolProperties properties) {
+        this.properties = properties;
+    }
+
+    public ReactorClientHttpConnector connector(String serviceId) {
+        ConnectionProvider provider = connectionProviders.computeIfAbsent(serviceId, this::newConnectionProvider);
+        HttpClientPoolProperties.Pool pool = properties.pool(serviceId);
+        HttpClient httpClient = HttpClient.create(provider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.connectTimeout().toMillis())
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .keepAlive(true)
+            .protocol(properties.httpProtocols());
+        return new ReactorClientHttpConnector(httpClient);
+    }
+
+    private ConnectionProvider newConnectionProvider(String serviceId) {
+        HttpClientPoolProperties.Pool pool = properties.pool(serviceId);
+        return ConnectionProvider.builder(serviceId)
+            .maxConnections(pool.maxConnections())
+            .pendingAcquireMaxCount(pool.pendingAcquireMaxCount())
+            .pendingAcquireTimeout(pool.pendingAcquireTimeout())
+            .maxIdleTime(pool.maxIdleTime())
+            .maxLifeTime(pool.maxLifeTime())
+            .evictInBackground(pool.evictInBackground())
+            .metrics(true)
+            .build();
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+}
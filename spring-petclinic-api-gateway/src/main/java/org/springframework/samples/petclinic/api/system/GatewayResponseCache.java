@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory store of the {@code ResponseCache} route filter: one bounded Caffeine cache of full responses per
+ * route, each entry expiring after its own time to live. Shared with the {@code responsecache} actuator endpoint.
+ */
+@Component
+public class GatewayResponseCache {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, RouteCache> routes = new ConcurrentHashMap<>();
+
+    public GatewayResponseCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the cache of a route, keeping the entries of a previous one when routes are refreshed with the
+     * same settings.
+     */
+    public RouteCache forRoute(String routeId, Duration ttl, long maximumSize) {
+        return routes.compute(routeId, (id, existing) ->
+            existing != null && existing.ttl().equals(ttl) && existing.maximumSize() == maximumSize
+                ? existing
+                : new RouteCache(id, ttl, maximumSize, meterRegistry));
+    }
+
+    public Map<String, RouteCache> routes() {
+        return Map.copyOf(routes);
+    }
+
+    public void purge() {
+        routes.values().forEach(RouteCache::purge);
+    }
+
+    /**
+     * @return whether the route has a cache
+     */
+    public boolean purge(String routeId) {
+        RouteCache cache = routes.get(routeId);
+        if (cache == null) {
+            return false;
+        }
+        cache.purge();
+        return true;
+    }
+
+    public static class RouteCache {
+
+        private final Duration ttl;
+
+        private final long maximumSize;
+
+        private final Cache<String, CachedResponse> entries;
+
+        RouteCache(String routeId, Duration ttl, long maximumSize, MeterRegistry meterRegistry) {
+            this.ttl = ttl;
+            this.maximumSize = maximumSize;
+            this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                        return response.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return response.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, entries, "gatewayResponseCache", "route", routeId);
+        }
+
+        public Duration ttl() {
+            return ttl;
+        }
+
+        public long maximumSize() {
+            return maximumSize;
+        }
+
+        public CachedResponse get(String key) {
+            return entries.getIfPresent(key);
+        }
+
+        public void put(String key, CachedResponse response) {
+            entries.put(key, response);
+        }
+
+        public Map<String, CachedResponse> entries() {
+            return Map.copyOf(entries.asMap());
+        }
+
+        public long hitCount() {
+            return entries.stats().hitCount();
+        }
+
+        public long missCount() {
+            return entries.stats().missCount();
+        }
+
+        public void purge() {
+            entries.invalidateAll();
+        }
+    }
+
+    /**
+     * A complete downstream response, replayed as is on a hit.
+     *
+     * @param storedAt when it was received, to derive its {@code Age}
+     * @param ttl      how long it may be served, at most the route's time to live
+     */
+    public record CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, Instant storedAt, Duration ttl) {
+
+        public Duration age(Instant now) {
+            return Duration.between(storedAt, now);
+        }
+    }
+}
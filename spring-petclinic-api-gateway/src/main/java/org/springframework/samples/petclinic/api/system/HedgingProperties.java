@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Typesafe configuration of request hedging, one policy per downstream service id.
+ * Hedging is off unless a policy enables it.
+ */
+@ConfigurationProperties(prefix = "gateway.hedging")
+public record HedgingProperties(
+    @DefaultValue Map<String, Policy> policies
+) {
+
+    public Policy policy(String serviceId) {
+        return policies.getOrDefault(serviceId, Policy.DEFAULTS);
+    }
+
+    /**
+     * @param enabled      whether a second request may be sent at all
+     * @param percentile   observed latency percentile after which the hedge is sent
+     * @param minDelay     lower bound of the hedge delay
+     * @param maxDelay     upper bound of the hedge delay, also used until enough latencies are observed
+     * @param budgetRatio  hedges allowed per regular request, e.g. 0.1 for at most 10% extra load
+     * @param budgetBurst  maximum number of hedges that can be saved up
+     * @param windowSize   number of recent latencies the percentile is computed from
+     */
+    public record Policy(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("0.95") double percentile,
+        @DefaultValue("5ms") Duration minDelay,
+        @DefaultValue("500ms") Duration maxDelay,
+        @DefaultValue("0.1") double budgetRatio,
+        @DefaultValue("10") int budgetBurst,
+        @DefaultValue("1000") int windowSize
+    ) {
+
+        /**
+         * Policy of the services without one of their own.
+         */
+        static final Policy DEFAULTS = DefaultValues.of(Policy.class);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typesafe configuration of the connection pools used by the gateway's own {@code WebClient}s,
+ * one pool per downstream service id.
+ *
+ * @param pools     pool settings by service id
+ * @param protocols HTTP versions spoken to the services, by the {@code WebClient}s and the proxied routes alike.
+ *                  {@code h2c, http11} offers HTTP/2 through an {@code Upgrade: h2c} on the first request of each
+ *                  connection and keeps HTTP/1.1 when the service declines it; {@code h2c} alone skips the
+ *                  upgrade (prior knowledge) and only works with services that speak cleartext HTTP/2.
+ */
+@ConfigurationProperties(prefix = "gateway.http-client")
+public record HttpClientPoolProperties(
+    @DefaultValue Map<String, Pool> pools,
+    @DefaultValue({"h2c", "http11"}) List<HttpProtocol> protocols
+) {
+
+    public HttpProtocol[] httpProtocols() {
+        return protocols.toArray(HttpProtocol[]::new);
+    }
+
+    public Pool pool(String serviceId) {
+        return pools.getOrDefault(serviceId, Pool.DEFAULTS);
+    }
+
+    /**
+     * @param maxConnections         connections open to the service at once
+     * @param pendingAcquireMaxCount requests waiting for a connection; beyond it they fail straight away
+     * @param pendingAcquireTimeout  how long a request may wait for a connection
+     * @param maxIdleTime            idle connections are closed after this long
+     * @param maxLifeTime            connections are closed after this long, so that new instances get traffic
+     * @param evictInBackground      how often idle and expired connections are looked for
+     * @param connectTimeout         how long opening a connection may take
+     */
+    public record Pool(
+        @DefaultValue("100") int maxConnections,
+        @DefaultValue("200") int pendingAcquireMaxCount,
+        @DefaultValue("5s") Duration pendingAcquireTimeout,
+        @DefaultValue("30s") Duration maxIdleTime,
+        @DefaultValue("5m") Duration maxLifeTime,
+        @DefaultValue("30s") Duration evictInBackground,
+        @DefaultValue("2s") Duration connectTimeout
+    ) {
+
+        /**
+         * Settings of the services without a pool of their own.
+         */
+        static final Pool DEFAULTS = DefaultValues.of(Pool.class);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Picks two instances at random and sends the request to the one with the lower expected cost: its peak-EWMA
+ * latency times the requests it already has in flight plus one (power of two choices). A degraded instance
+ * thereby loses its share of the traffic within a few requests, while two random candidates keep gateways
+ * from all piling onto the same momentarily fastest instance.
+ * <p>
+ * An instance whose request failed is ejected: it is left out of the candidates for a while, as long as other
+ * instances are available. Otherwise it would still win every draw against a slow but healthy instance, which
+ * would then keep the share of the traffic of the pairs the two of them form.
+ * <p>
+ * Latencies and in-flight counts are fed back through the {@link LoadBalancerLifecycle} callbacks, which both
+ * the gateway's {@code lb://} routes and the {@code @LoadBalanced} {@code WebClient} invoke.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer,
+    LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    /**
+     * Request attribute holding a {@link ServiceInstance} not to pick again, e.g. the one a hedged request is
+     * already waiting on. It is ignored when that instance is the only one left.
+     */
+    public static final String EXCLUDED_INSTANCE_ATTR = LatencyAwareLoadBalancer.class.getName() + ".excludedInstance";
+
+    /**
+     * Smallest share of the latency estimate taken by a new observation, however soon after the previous one.
+     */
+    private static final double MIN_OBSERVATION_WEIGHT = 0.1;
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+
+    private final long decayNanos;
+
+    private final long failurePenaltyNanos;
+
+    private final long ejectionNanos;
+
+    private final Map<String, InstanceStatistics> statistics = new ConcurrentHashMap<>();
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+                                    LoadBalancingProperties.Policy policy) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.decayNanos = policy.decay().toNanos();
+        this.failurePenaltyNanos = policy.failurePenalty().toNanos();
+        this.ejectionNanos = policy.ejection().toNanos();
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider
+            .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        ServiceInstance excluded = excludedInstance(request);
+        return supplier.get(request).next().map(instances -> chooseFrom(instances, excluded));
+    }
+
+    private static ServiceInstance excludedInstance(Request<?> request) {
+        if (request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null
+            && context.getClientRequest().getAttributes() != null
+            && context.getClientRequest().getAttributes().get(EXCLUDED_INSTANCE_ATTR) instanceof ServiceInstance instance) {
+            return instance;
+        }
+        return null;
+    }
+
+    private Response<ServiceInstance> chooseFrom(List<ServiceInstance> allInstances, ServiceInstance excluded) {
+        if (allInstances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        forgetRemovedInstances(allInstances);
+        List<ServiceInstance> instances = allInstances;
+        if (excluded != null && allInstances.size() > 1) {
+            String excludedKey = key(excluded);
+            List<ServiceInstance> others = allInstances.stream()
+                .filter(instance -> !key(instance).equals(excludedKey))
+                .toList();
+            instances = others.isEmpty() ? allInstances : others;
+        }
+        long now = System.nanoTime();
+        List<ServiceInstance> available = instances.stream()
+            .filter(instance -> !statisticsOf(instance).isEjected(now))
+            .toList();
+        if (!available.isEmpty()) {
+            instances = available;
+        }
+        if (instances.size() == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        int second = random.nextInt(instances.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        return new DefaultResponse(statisticsOf(a).load(now) <= statisticsOf(b).load(now) ? a : b);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (request.getContext() instanceof TimedRequestContext context) {
+            context.setRequestStartTime(System.nanoTime());
+        }
+        if (lbResponse.hasServer()) {
+            statisticsOf(lbResponse.getServer()).outstanding.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        InstanceStatistics instance = statisticsOf(lbResponse.getServer());
+        instance.outstanding.updateAndGet(outstanding -> Math.max(0, outstanding - 1));
+        if (!(completionContext.getLoadBalancerRequest().getContext() instanceof TimedRequestContext context)
+            || context.getRequestStartTime() == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long latency = now - context.getRequestStartTime();
+        if (isFailure(completionContext)) {
+            latency = Math.max(latency, failurePenaltyNanos);
+            instance.eject(now);
+        }
+        if (completionContext.status() != CompletionContext.Status.DISCARD) {
+            instance.observe(latency, now);
+        }
+    }
+
+    private static boolean isFailure(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        if (completionContext.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+        return completionContext.getClientResponse() instanceof ResponseData response
+            && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError();
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    private InstanceStatistics statisticsOf(ServiceInstance instance) {
+        return statistics.computeIfAbsent(key(instance), key -> new InstanceStatistics());
+    }
+
+    private void forgetRemovedInstances(List<ServiceInstance> instances) {
+        if (statistics.size() > instances.size()) {
+            Set<String> current = instances.stream().map(LatencyAwareLoadBalancer::key).collect(Collectors.toSet());
+            statistics.keySet().retainAll(current);
+        }
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ':' + instance.getPort();
+    }
+
+    private class InstanceStatistics {
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private double ewmaNanos;
+
+        private long observedAt = System.nanoTime();
+
+        private boolean ejected;
+
+        private long ejectedAt;
+
+        /**
+         * A latency above the estimate replaces it at once, a lower one is blended in with a weight growing with
+         * the time elapsed since the previous observation, and of at least {@link #MIN_OBSERVATION_WEIGHT}. Under
+         * load the observations are far closer together than the decay, and a spike such as the first requests on
+         * cold connections would otherwise outweigh the following ones for about as long as the decay.
+         */
+        synchronized void observe(long latencyNanos, long now) {
+            if (latencyNanos > ewmaNanos) {
+                ewmaNanos = latencyNanos;
+            } else {
+                double weight = Math.min(Math.exp(-(double) (now - observedAt) / decayNanos),
+                    1 - MIN_OBSERVATION_WEIGHT);
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            observedAt = now;
+        }
+
+        synchronized void eject(long now) {
+            ejected = true;
+            ejectedAt = now;
+        }
+
+        synchronized boolean isEjected(long now) {
+            if (ejected && now - ejectedAt >= ejectionNanos) {
+                ejected = false;
+            }
+            return ejected;
+        }
+
+        /**
+         * The estimate decays towards zero while the instance gets no requests, so that it is eventually probed
+         * again. An instance without any observation yet is free while idle, and expensive as soon as it has a
+         * request in flight, so that a newly registered instance does not take all the traffic at once.
+         */
+        synchronized double load(long now) {
+            int inFlight = outstanding.get();
+            if (ewmaNanos == 0) {
+                return inFlight == 0 ? 0 : failurePenaltyNanos + inFlight;
+            }
+            double decayed = ewmaNanos * Math.exp(-(double) Math.max(0, now - observedAt) / decayNanos);
+            return decayed * (inFlight + 1);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer configuration of every downstream service, registered through {@code @LoadBalancerClients}.
+ * Deliberately not a {@code @Configuration}: it is instantiated in each service's own load balancer context and
+ * must stay out of component scanning.
+ */
+public class LoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(Environment environment,
+                                                                                 LoadBalancerClientFactory clientFactory,
+                                                                                 LoadBalancingProperties properties) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        LoadBalancingProperties.Policy policy = properties.policy(serviceId);
+        ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplier =
+            clientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class);
+        return switch (policy.strategy()) {
+            case LATENCY_AWARE -> new LatencyAwareLoadBalancer(serviceInstanceListSupplier, policy);
+            case ROUND_ROBIN -> new RoundRobinLoadBalancer(serviceInstanceListSupplier, serviceId);
+        };
+    }
+}
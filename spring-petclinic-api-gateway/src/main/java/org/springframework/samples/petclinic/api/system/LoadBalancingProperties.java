@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Typesafe configuration of the client-side load balancing, one policy per service id.
+ * Services without a policy are balanced by latency with the default settings.
+ */
+@ConfigurationProperties(prefix = "gateway.load-balancer")
+public record LoadBalancingProperties(
+    @DefaultValue Map<String, Policy> services
+) {
+
+    public Policy policy(String serviceId) {
+        return services.getOrDefault(serviceId, Policy.DEFAULTS);
+    }
+
+    public enum Strategy {
+        LATENCY_AWARE, ROUND_ROBIN
+    }
+
+    /**
+     * @param strategy       {@code latency-aware} or Spring Cloud LoadBalancer's {@code round-robin}
+     * @param decay          how fast the latency estimate of an instance forgets older requests; an instance that
+     *                       was avoided for being slow is tried again after roughly this long
+     * @param failurePenalty latency recorded for a failed request, so that an instance failing fast is not
+     *                       mistaken for a fast one
+     * @param ejection       time an instance is left out of the selection after a failed request, as long as other
+     *                       instances are available; it is tried again afterwards
+     */
+    public record Policy(
+        @DefaultValue("latency-aware") Strategy strategy,
+        @DefaultValue("10s") Duration decay,
+        @DefaultValue("1s") Duration failurePenalty,
+        @DefaultValue("5s") Duration ejection
+    ) {
+
+        /**
+         * Policy of the services without one of their own.
+         */
+        static final Policy DEFAULTS = DefaultValues.of(Policy.class);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.validation.constraints.Min;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code RequestRateLimiter} backend keeping its token buckets in the gateway's memory instead of Redis.
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next request (the
+ * generic cell rate algorithm), so a check is one CAS without locks or allocation besides the response. The
+ * buckets live in a Caffeine cache, whose striped hash table keeps concurrent lookups from contending and which
+ * drops idle keys. Limits are per gateway instance.
+ * <p>
+ * A route sets its own limits with the {@code local-rate-limiter.replenish-rate},
+ * {@code local-rate-limiter.burst-capacity} and {@code local-rate-limiter.requested-tokens} filter arguments,
+ * otherwise the {@code gateway.rate-limit} defaults apply.
+ */
+@Component
+public class LocalRateLimiter extends AbstractRateLimiter<LocalRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Config defaultConfig;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public LocalRateLimiter(RateLimitProperties properties, ConfigurationService configurationService,
+                            MeterRegistry meterRegistry) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.defaultConfig = new Config()
+            .setReplenishRate(properties.replenishRate())
+            .setBurstCapacity(properties.burstCapacity());
+        this.buckets = Caffeine.newBuilder()
+            .expireAfterAccess(properties.idleTimeout())
+            .maximumSize(properties.maximumKeys())
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "rateLimitBuckets");
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+        AtomicLong bucket = buckets.get(routeId + ':' + id, key -> new AtomicLong(Long.MIN_VALUE));
+        long remaining = tryAcquire(bucket, config, System.nanoTime());
+        return Mono.just(new Response(remaining >= 0, headers(config, Math.max(remaining, 0))));
+    }
+
+    /**
+     * @return the tokens left once the request is admitted, or {@code -1} when it is refused
+     */
+    static long tryAcquire(AtomicLong bucket, Config config, long now) {
+        long interval = NANOS_PER_SECOND / config.getReplenishRate();
+        long tolerance = interval * config.getBurstCapacity();
+        long cost = interval * config.getRequestedTokens();
+        while (true) {
+            long theoreticalArrival = bucket.get();
+            long next = Math.max(theoreticalArrival, now) + cost;
+            long backlog = next - now;
+            if (backlog > tolerance) {
+                return -1;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, next)) {
+                return (tolerance - backlog) / interval;
+            }
+        }
+    }
+
+    private static Map<String, String> headers(Config config, long remaining) {
+        return Map.of(
+            REMAINING_HEADER, String.valueOf(remaining),
+            REPLENISH_RATE_HEADER, String.valueOf(config.getReplenishRate()),
+            BURST_CAPACITY_HEADER, String.valueOf(config.getBurstCapacity()));
+    }
+
+    @Validated
+    public static class Config {
+
+        @Min(1)
+        private int replenishRate;
+
+        @Min(0)
+        private int burstCapacity;
+
+        @Min(1)
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+    }
+}
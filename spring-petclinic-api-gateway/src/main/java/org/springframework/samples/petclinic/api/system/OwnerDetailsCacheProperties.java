@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the assembled {@code OwnerDetails} cache.
+ *
+ * @param enabled     whether owner details are cached at all
+ * @param ttl         how long an entry lives after it has been written
+ * @param maximumSize upper bound on the number of cached owners
+ */
+@ConfigurationProperties(prefix = "gateway.owner-details.cache")
+public record OwnerDetailsCacheProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("30s") Duration ttl,
+    @DefaultValue("1000") long maximumSize
+) {
+}
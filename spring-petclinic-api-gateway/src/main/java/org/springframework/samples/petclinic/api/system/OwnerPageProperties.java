@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the composite owner page: how long each section may take before the page is sent
+ * without it.
+ *
+ * @param ownerTimeout    owner details with the visits of the pets
+ * @param petTypesTimeout pet types
+ * @param vetsTimeout     veterinarians
+ */
+@ConfigurationProperties(prefix = "gateway.owner-page")
+public record OwnerPageProperties(
+    @DefaultValue("2s") Duration ownerTimeout,
+    @DefaultValue("500ms") Duration petTypesTimeout,
+    @DefaultValue("500ms") Duration vetsTimeout
+) {
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.samples.petclinic.api.system.BulkheadProperties.Priority;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-route bulkheads sharing the gateway's overall concurrency.
+ * <p>
+ * A request needs a slot of its route and a slot of the gateway. When either is taken it waits in a bounded
+ * queue of its route's {@link Priority}; each released slot goes to the oldest admissible request of the highest
+ * priority, so interactive routes are served ahead of bulk ones once the gateway is saturated, and a slow route
+ * can never hold more than its own slots. Queues are short and touched only on acquire and release, so a single
+ * lock guards them.
+ */
+@Component
+public class PriorityBulkheads {
+
+    private final BulkheadProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final Map<Priority, ArrayDeque<Waiter>> waiters = new EnumMap<>(Priority.class);
+
+    private int inFlight;
+
+    public PriorityBulkheads(BulkheadProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        for (Priority priority : Priority.values()) {
+            waiters.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Waiting requests of a route are admitted in arrival order, so a request only skips the queue when its
+     * route has nobody waiting.
+     *
+     * @return a permit to release once the request completes, or a {@link BulkheadFullException} when the
+     * route's queue is full or the request waited longer than allowed
+     */
+    public Mono<Permit> acquire(String routeId) {
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(routeId, this::bulkhead);
+        return Mono.<Permit>create(sink -> enqueue(bulkhead, sink))
+            .timeout(bulkhead.route.maxWait())
+            .onErrorMap(TimeoutException.class, e -> {
+                bulkhead.timeouts.increment();
+                return new BulkheadFullException(routeId, "timed out waiting for a slot");
+            });
+    }
+
+    private void enqueue(Bulkhead bulkhead, MonoSink<Permit> sink) {
+        Waiter waiter = new Waiter(bulkhead, sink, System.nanoTime());
+        sink.onCancel(() -> cancel(waiter));
+        Permit granted = null;
+        synchronized (this) {
+            if (hasCapacity(bulkhead) && bulkhead.queued == 0) {
+                granted = grant(waiter);
+            } else if (bulkhead.queued >= bulkhead.route.maxQueue()) {
+                bulkhead.queueFull.increment();
+                sink.error(new BulkheadFullException(bulkhead.routeId, "queue is full"));
+                return;
+            } else {
+                waiters.get(bulkhead.route.priority()).addLast(waiter);
+                bulkhead.queued++;
+            }
+        }
+        if (granted != null) {
+            bulkhead.waitTime.record(Duration.ZERO);
+            sink.success(granted);
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            if (waiters.get(waiter.bulkhead.route.priority()).remove(waiter)) {
+                waiter.bulkhead.queued--;
+                return;
+            }
+        }
+        if (waiter.permit != null) {
+            waiter.permit.release();
+        }
+    }
+
+    private void release(Bulkhead bulkhead) {
+        Map<Waiter, Permit> admitted = new LinkedHashMap<>();
+        synchronized (this) {
+            bulkhead.inFlight--;
+            inFlight--;
+            for (Priority priority : Priority.values()) {
+                Iterator<Waiter> queue = waiters.get(priority).iterator();
+                while (queue.hasNext() && inFlight < properties.maxConcurrent()) {
+                    Waiter waiter = queue.next();
+                    if (hasCapacity(waiter.bulkhead)) {
+                        queue.remove();
+                        waiter.bulkhead.queued--;
+                        admitted.put(waiter, grant(waiter));
+                    }
+                }
+            }
+        }
+        admitted.forEach((waiter, permit) -> {
+            waiter.bulkhead.waitTime.record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            waiter.sink.success(permit);
+        });
+    }
+
+    private boolean hasCapacity(Bulkhead bulkhead) {
+        return inFlight < properties.maxConcurrent() && bulkhead.inFlight < bulkhead.route.maxConcurrent();
+    }
+
+    private Permit grant(Waiter waiter) {
+        waiter.bulkhead.inFlight++;
+        inFlight++;
+        waiter.permit = new Permit(waiter.bulkhead);
+        return waiter.permit;
+    }
+
+    private Bulkhead bulkhead(String routeId) {
+        Bulkhead bulkhead = new Bulkhead(routeId, properties.route(routeId), meterRegistry);
+        Gauge.builder("gateway.bulkhead.queue.depth", bulkhead, b -> b.queued)
+            .description("Requests waiting for a slot of the route")
+            .tag("route", routeId)
+            .register(meterRegistry);
+        Gauge.builder("gateway.bulkhead.in.flight", bulkhead, b -> b.inFlight)
+            .description("Requests of the route holding a slot")
+            .tag("route", routeId)
+            .register(meterRegistry);
+        return bulkhead;
+    }
+
+    public class Permit {
+
+        private final Bulkhead bulkhead;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                PriorityBulkheads.this.release(bulkhead);
+            }
+        }
+    }
+
+    public static class BulkheadFullException extends RuntimeException {
+
+        public BulkheadFullException(String routeId, String reason) {
+            super("Bulkhead of route " + routeId + " refused the request: " + reason, null, false, false);
+        }
+    }
+
+    private static class Bulkhead {
+
+        private final String routeId;
+
+        private final BulkheadProperties.Route route;
+
+        private final Timer waitTime;
+
+        private final Counter queueFull;
+
+        private final Counter timeouts;
+
+        private int inFlight;
+
+        private int queued;
+
+        Bulkhead(String routeId, BulkheadProperties.Route route, MeterRegistry meterRegistry) {
+            this.routeId = routeId;
+            this.route = route;
+            this.waitTime = Timer.builder("gateway.bulkhead.wait")
+                .description("Time queued requests of the route waited for a slot")
+                .tag("route", routeId)
+                .register(meterRegistry);
+            this.queueFull = rejections(meterRegistry, routeId, "queue-full");
+            this.timeouts = rejections(meterRegistry, routeId, "timeout");
+        }
+
+        private static Counter rejections(MeterRegistry meterRegistry, String routeId, String reason) {
+            return Counter.builder("gateway.bulkhead.rejections")
+                .description("Requests refused by the bulkhead of the route")
+                .tag("route", routeId)
+                .tag("reason", reason)
+                .register(meterRegistry);
+        }
+    }
+
+    private static class Waiter {
+
+        private final Bulkhead bulkhead;
+
+        private final MonoSink<Permit> sink;
+
+        private final long enqueuedAt;
+
+        private volatile Permit permit;
+
+        Waiter(Bulkhead bulkhead, MonoSink<Permit> sink, long enqueuedAt) {
+            this.bulkhead = bulkhead;
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
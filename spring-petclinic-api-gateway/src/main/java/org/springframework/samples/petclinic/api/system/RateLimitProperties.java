@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the in-memory {@code RequestRateLimiter} backend.
+ *
+ * @param replenishRate  requests per second allowed per key on routes without their own
+ *                       {@code local-rate-limiter.*} arguments
+ * @param burstCapacity  requests a key may send at once after a quiet period, on the same routes
+ * @param keyResolver    what identifies a client: its IP address, the request path or a request header
+ * @param keyHeader      header holding the key when {@code keyResolver} is {@code header}
+ * @param idleTimeout    a key that sent no request for this long is forgotten, its bucket being full again anyway
+ * @param maximumKeys    upper bound of the keys tracked at once, bounding memory under a flood of distinct clients
+ */
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public record RateLimitProperties(
+    @DefaultValue("100") int replenishRate,
+    @DefaultValue("200") int burstCapacity,
+    @DefaultValue("ip") KeyResolverType keyResolver,
+    @DefaultValue("X-Client-Id") String keyHeader,
+    @DefaultValue("10m") Duration idleTimeout,
+    @DefaultValue("100000") long maximumKeys
+) {
+
+    public enum KeyResolverType {
+        IP, PATH, HEADER
+    }
+}
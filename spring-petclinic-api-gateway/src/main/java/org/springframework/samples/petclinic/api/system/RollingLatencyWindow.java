@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency samples of the last {@code size} calls to a downstream, from which percentiles are computed.
+ * <p>
+ * Recording is lock-free. Percentiles are computed from a sorted copy of the window, so callers on a hot
+ * path should cache the result rather than asking on every request.
+ */
+public class RollingLatencyWindow {
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong recorded = new AtomicLong();
+
+    public RollingLatencyWindow(int size) {
+        this.samples = new AtomicLongArray(size);
+    }
+
+    public void record(Duration latency) {
+        record(latency.toNanos());
+    }
+
+    public void record(long latencyNanos) {
+        long index = recorded.getAndIncrement();
+        samples.set((int) (index % samples.length()), latencyNanos);
+    }
+
+    public long count() {
+        return Math.min(recorded.get(), samples.length());
+    }
+
+    /**
+     * @param percentile between 0 and 1, for example {@code 0.95}
+     * @return the latency below which the given fraction of the recorded calls fall,
+     * or empty when fewer than {@code minSamples} calls were recorded
+     */
+    public Optional<Duration> percentile(double percentile, int minSamples) {
+        int count = (int) count();
+        if (count == 0 || count < minSamples) {
+            return Optional.empty();
+        }
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * count) - 1;
+        return Optional.of(Duration.ofNanos(sorted[Math.max(0, Math.min(rank, count - 1))]));
+    }
+}
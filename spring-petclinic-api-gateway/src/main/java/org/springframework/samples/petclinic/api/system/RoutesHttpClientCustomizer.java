@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Lets the proxied routes speak the same HTTP versions to the services as the gateway's own {@code WebClient}s.
+ *
+ * @see HttpClientPoolProperties#protocols()
+ */
+@Component
+public class RoutesHttpClientCustomizer implements HttpClientCustomizer {
+
+    private final HttpClientPoolProperties properties;
+
+    public RoutesHttpClientCustomizer(HttpClientPoolProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public HttpClient customize(HttpClient httpClient) {
+        return httpClient.protocol(properties.httpProtocols());
+    }
+}
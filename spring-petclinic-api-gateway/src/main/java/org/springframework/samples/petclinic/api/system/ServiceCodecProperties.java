@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Typesafe configuration of the format the gateway asks the customers and visits services to answer in. The
+ * binary formats are requested through {@code Accept} with JSON as a fallback, so a service that cannot write
+ * them still answers.
+ *
+ * @param format body format of the service-to-service calls
+ */
+@ConfigurationProperties(prefix = "gateway.service-codec")
+public record ServiceCodecProperties(
+    @DefaultValue("smile") Format format
+) {
+
+    /**
+     * Media types to send in {@code Accept}, in order of preference.
+     */
+    public List<MediaType> accept() {
+        return format == Format.JSON
+            ? List.of(MediaType.APPLICATION_JSON)
+            : List.of(format.mediaType(), MediaType.APPLICATION_JSON);
+    }
+
+    public enum Format {
+
+        JSON(MediaType.APPLICATION_JSON),
+        SMILE(new MediaType("application", "x-jackson-smile")),
+        CBOR(MediaType.APPLICATION_CBOR);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Typesafe configuration of the downstream call timeouts, one policy per service id.
+ * Services without a policy get an adaptive timeout with the default settings.
+ */
+@ConfigurationProperties(prefix = "gateway.timeouts")
+public record TimeoutProperties(
+    @DefaultValue Map<String, Policy> services
+) {
+
+    public Policy policy(String serviceId) {
+        return services.getOrDefault(serviceId, Policy.DEFAULTS);
+    }
+
+    /**
+     * The ceiling of all services, used as the circuit breakers' own time limit behind the adaptive timeouts.
+     */
+    public Duration maxCeiling() {
+        return services.values().stream()
+            .map(Policy::ceiling)
+            .reduce(Policy.DEFAULTS.ceiling(), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+
+    /**
+     * @param adaptive   whether the timeout follows the observed latency; when off, {@code ceiling} is a fixed timeout
+     * @param percentile observed latency percentile the timeout is derived from
+     * @param multiplier factor applied to that percentile
+     * @param floor      the timeout never gets shorter than this
+     * @param ceiling    the timeout never gets longer than this, also used until enough latencies are observed
+     * @param windowSize number of recent calls the percentile is computed from
+     */
+    public record Policy(
+        @DefaultValue("true") boolean adaptive,
+        @DefaultValue("0.99") double percentile,
+        @DefaultValue("3.0") double multiplier,
+        @DefaultValue("100ms") Duration floor,
+        @DefaultValue("10s") Duration ceiling,
+        @DefaultValue("1000") int windowSize
+    ) {
+
+        /**
+         * Policy of the services without one of their own.
+         */
+        static final Policy DEFAULTS = DefaultValues.of(Policy.class);
+    }
+}
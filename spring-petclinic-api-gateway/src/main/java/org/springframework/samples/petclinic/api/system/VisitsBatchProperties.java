@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the visits lookup micro-batching.
+ *
+ * @param enabled      whether concurrent visits lookups are batched at all
+ * @param window       how long the first lookup of a batch waits for others to join it
+ * @param maxBatchSize number of pet ids that triggers an immediate call, also bounding the request URL length
+ */
+@ConfigurationProperties(prefix = "gateway.visits.batch")
+public record VisitsBatchProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("2ms") Duration window,
+    @DefaultValue("100") int maxBatchSize
+) {
+}
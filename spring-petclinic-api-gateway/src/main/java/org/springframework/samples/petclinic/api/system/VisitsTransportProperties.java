@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.system;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Typesafe configuration of the transport the visits of pets are looked up with.
+ *
+ * @param type              {@code http} for a request per lookup, {@code rsocket} for request-streams multiplexed
+ *                          over long-lived connections to every visits-service instance
+ * @param discoveryRefresh  how often the RSocket connections are reconciled with the registered instances
+ * @param portMetadataKey   instance metadata entry holding the RSocket port of visits-service
+ */
+@ConfigurationProperties(prefix = "gateway.visits.transport")
+public record VisitsTransportProperties(
+    @DefaultValue("http") Type type,
+    @DefaultValue("30s") Duration discoveryRefresh,
+    @DefaultValue("rsocket-port") String portMetadataKey
+) {
+
+    public enum Type {
+        HTTP, RSOCKET
+    }
+}
@@ -4,7 +4,14 @@ angular.module('ownerDetails')
     .controller('OwnerDetailsController', ['$http', '$stateParams', function ($http, $stateParams) {
         var self = this;
 
-        $http.get('api/gateway/owners/' + $stateParams.ownerId).then(function (resp) {
-            self.owner = resp.data;
+        $http.get('api/gateway/owners/' + $stateParams.ownerId + '/page').then(function (resp) {
+            var page = resp.data;
+            self.owner = page.owner.data;
+            self.vets = page.vets.data;
+            self.sections = {
+                owner: page.owner.status,
+                petTypes: page.petTypes.status,
+                vets: page.vets.status
+            };
         });
     }]);
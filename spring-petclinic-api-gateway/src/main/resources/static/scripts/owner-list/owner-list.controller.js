@@ -3,8 +3,46 @@
 angular.module('ownerList')
     .controller('OwnerListController', ['$http', function ($http) {
         var self = this;
+        var pageSize = 20;
+        var next = null;
+        var search = 0;
 
-        $http.get('api/customer/owners').then(function (resp) {
-            self.owners = resp.data;
-        });
+        self.owners = [];
+        self.lastName = '';
+
+        self.search = function () {
+            search++;
+            self.owners = [];
+            next = null;
+            load();
+        };
+
+        self.loadMore = function () {
+            load(next);
+        };
+
+        self.hasMore = function () {
+            return next !== null;
+        };
+
+        function load(after) {
+            var current = search;
+            self.loading = true;
+            $http.get('api/customer/owners', {
+                params: {size: pageSize, lastName: self.lastName || undefined, after: after}
+            }).then(function (resp) {
+                // a page of a previous search may come back after the new search started
+                if (current !== search) {
+                    return;
+                }
+                self.owners = self.owners.concat(resp.data.items);
+                next = resp.data.next;
+            }).finally(function () {
+                if (current === search) {
+                    self.loading = false;
+                }
+            });
+        }
+
+        self.search();
     }]);
@@ -0,0 +1,77 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveTimeoutTest {
+
+    private final TimeoutProperties.Policy policy = new TimeoutProperties.Policy(
+        true, 0.99, 3.0, Duration.ofMillis(50), Duration.ofSeconds(10), 100);
+
+    private final AdaptiveTimeout timeout = new AdaptiveTimeout("customers-service", policy, new SimpleMeterRegistry());
+
+    @Test
+    void usesCeilingUntilEnoughLatenciesAreObserved() {
+        assertEquals(Duration.ofSeconds(10), timeout.current());
+    }
+
+    @Test
+    void stuckCallFailsFastOnceLatenciesAreKnown() {
+        for (int i = 0; i < 100; i++) {
+            timeout.apply(Mono.just("owner")).block();
+        }
+
+        assertEquals(Duration.ofMillis(50), timeout.current());
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> timeout.apply(Mono.never()).block());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    @Test
+    void fixedTimeoutWhenNotAdaptive() {
+        AdaptiveTimeout fixed = new AdaptiveTimeout("genai-service",
+            new TimeoutProperties.Policy(false, 0.99, 3.0, Duration.ofMillis(100), Duration.ofSeconds(30), 1000), new SimpleMeterRegistry());
+
+        assertEquals(Duration.ofSeconds(30), fixed.current());
+    }
+
+    @Test
+    void timeoutIsRecomputedAtMostOnceASecond() {
+        for (int i = 0; i < 100; i++) {
+            timeout.apply(Mono.just("owner")).block();
+        }
+        assertEquals(Duration.ofMillis(50), timeout.current());
+
+        Flux.range(0, 100)
+            .flatMap(i -> timeout.apply(Mono.delay(Duration.ofMillis(20))))
+            .blockLast();
+
+        assertEquals(Duration.ofMillis(50), timeout.current());
+    }
+
+    @Test
+    void operationsOfAServiceKeepTheirOwnLatencies() {
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(
+            new TimeoutProperties(Map.of("customers-service", policy)), new SimpleMeterRegistry());
+        AdaptiveTimeout singleOwner = timeouts.forOperation("customers-service", "getOwner");
+
+        for (int i = 0; i < 100; i++) {
+            singleOwner.apply(Mono.just("owner")).block();
+        }
+
+        assertEquals(Duration.ofMillis(50), singleOwner.current());
+        assertEquals(Duration.ofSeconds(10), timeouts.forOperation("customers-service", "getOwners").current());
+        assertSame(singleOwner, timeouts.forOperation("customers-service", "getOwner"));
+    }
+}
@@ -0,0 +1,100 @@
+package org.springframework.samples.petclinic.api.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.DownstreamHttpClients;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import org.springframework.samples.petclinic.api.system.HttpClientPoolProperties;
+import org.springframework.samples.petclinic.api.system.ServiceCodecProperties;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class HttpVisitsServiceClientIntegrationTest {
+
+    private static final Integer PET_ID = 1;
+
+    private HttpVisitsServiceClient visitsServiceClient;
+
+    private MockWebServer server;
+
+    private DownstreamHttpClients httpClients;
+
+    @BeforeEach
+    void setUp() {
+        server = new MockWebServer();
+        // MockWebServer declines the h2c upgrade, so these calls also go through the HTTP/1.1 fallback
+        httpClients = new DownstreamHttpClients(
+            new HttpClientPoolProperties(Map.of(), List.of(HttpProtocol.H2C, HttpProtocol.HTTP11)));
+        visitsServiceClient = new HttpVisitsServiceClient(WebClient.builder(), httpClients,
+            new RequestHedgers(new HedgingProperties(Map.of()), new SimpleMeterRegistry()),
+            new AdaptiveTimeouts(new TimeoutProperties(Map.of()), new SimpleMeterRegistry()),
+            new ServiceCodecProperties(ServiceCodecProperties.Format.SMILE));
+        visitsServiceClient.setHostname(server.url("/").toString());
+    }
+
+    @AfterEach
+    void shutdown() throws IOException {
+        this.server.shutdown();
+        this.httpClients.destroy();
+    }
+
+    @Test
+    void getVisitsForPets_withAvailableVisitsService() {
+        prepareResponse(response -> response
+            .setHeader("Content-Type", "application/json")
+            .setBody("{\"items\":[{\"id\":5,\"date\":\"2018-11-15\",\"description\":\"test visit\",\"petId\":1}]}"));
+
+        Mono<Visits> visits = visitsServiceClient.getVisitsForPets(Collections.singletonList(1));
+
+        assertVisitDescriptionEquals(visits.block(), PET_ID,"test visit");
+    }
+
+    @Test
+    void getVisitsForPets_negotiatesSmile() throws Exception {
+        byte[] smile = new ObjectMapper(new SmileFactory())
+            .writeValueAsBytes(new Visits(List.of(new VisitDetails(5, 1, "2018-11-15", "test visit"))));
+        prepareResponse(response -> response
+            .setHeader("Content-Type", "application/x-jackson-smile")
+            .setBody(new Buffer().write(smile)));
+
+        Mono<Visits> visits = visitsServiceClient.getVisitsForPets(Collections.singletonList(1));
+
+        assertVisitDescriptionEquals(visits.block(), PET_ID, "test visit");
+        assertEquals("application/x-jackson-smile, application/json", server.takeRequest().getHeader("Accept"));
+    }
+
+
+    private void assertVisitDescriptionEquals(Visits visits, int petId, String description) {
+        assertEquals(1, visits.items().size());
+        assertNotNull(visits.items().get(0));
+        assertEquals(petId, visits.items().get(0).petId());
+        assertEquals(description, visits.items().get(0).description());
+    }
+
+    private void prepareResponse(Consumer<MockResponse> consumer) {
+        MockResponse response = new MockResponse();
+        consumer.accept(response);
+        this.server.enqueue(response);
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.system.OwnerDetailsCacheProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OwnerDetailsCacheTest {
+
+    private final OwnerDetailsCache cache =
+        new OwnerDetailsCache(new OwnerDetailsCacheProperties(true, Duration.ofMinutes(1), 10), new SimpleMeterRegistry());
+
+    @Test
+    void loadIsCachedDespiteWritesToOtherOwners() {
+        long generation = cache.generation();
+        cache.evictOwner(2);
+        cache.evictOwnerOfPet(30);
+
+        cache.put(1, owner(1, 20), generation);
+
+        assertNotNull(cache.get(1).block());
+    }
+
+    @Test
+    void loadIsDroppedWhenItsOwnerWasWrittenMeanwhile() {
+        long generation = cache.generation();
+        cache.evictOwner(1);
+
+        cache.put(1, owner(1, 20), generation);
+
+        assertNull(cache.get(1).block());
+    }
+
+    @Test
+    void loadIsDroppedWhenOneOfItsPetsWasWrittenMeanwhile() {
+        long generation = cache.generation();
+        cache.evictOwnerOfPet(21);
+
+        cache.put(1, owner(1, 20, 21), generation);
+
+        assertNull(cache.get(1).block());
+    }
+
+    @Test
+    void petWriteEvictsOnlyItsOwner() {
+        cache.put(1, owner(1, 20), cache.generation());
+        cache.put(2, owner(2, 30), cache.generation());
+
+        cache.evictOwnerOfPet(30);
+
+        assertNotNull(cache.get(1).block());
+        assertNull(cache.get(2).block());
+    }
+
+    @Test
+    void loadIsDroppedWhenTheCacheWasClearedMeanwhile() {
+        long generation = cache.generation();
+        cache.evictAll();
+
+        cache.put(1, owner(1, 20), generation);
+
+        assertNull(cache.get(1).block());
+    }
+
+    private static OwnerDetails owner(int ownerId, int... petIds) {
+        List<PetDetails> pets = Arrays.stream(petIds)
+            .mapToObj(petId -> PetDetails.PetDetailsBuilder.aPetDetails().id(petId).name("pet-" + petId).build())
+            .toList();
+        return OwnerDetails.OwnerDetailsBuilder.anOwnerDetails().id(ownerId).pets(pets).build();
+    }
+}
@@ -0,0 +1,207 @@
+package org.springframework.samples.petclinic.api.application;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsJsonMerger.OwnerJson;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OwnerDetailsJsonMergerTest {
+
+    private static final DefaultDataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final OwnerDetailsJsonMerger merger = new OwnerDetailsJsonMerger();
+
+    private final byte[] owner = ("{\"id\":1,\"firstName\":\"George\",\"lastName\":\"Franklin\",\"address\":\"110 W. Liberty St.\","
+        + "\"city\":\"Madison\",\"telephone\":\"6085551023\",\"pets\":["
+        + "{\"id\":1,\"name\":\"Leo\",\"birthDate\":\"2010-09-07\",\"type\":{\"id\":1,\"name\":\"cat\"}},"
+        + "{\"id\":2,\"name\":\"Basil\",\"birthDate\":\"2012-08-06\",\"type\":{\"id\":6,\"name\":\"hamster\"}},"
+        + "{\"id\":3,\"name\":\"Rosy\",\"birthDate\":\"2011-04-17\",\"type\":{\"id\":2,\"name\":\"dog\"}}]}")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] visits = visits(50, "Rabies shot, \"booster\" due next year; caf\u00e9 au lait coat. ".repeat(40));
+
+    @Test
+    void mergesTheSameDocumentAsTheDtoRoundTrip() throws IOException {
+        assertEquals(mapper.readTree(dtoRoundTrip()), mapper.readTree(merged(owner, visits, 7)));
+    }
+
+    @Test
+    void mergesBodiesReceivedByteByByte() throws IOException {
+        assertEquals(mapper.readTree(dtoRoundTrip()), mapper.readTree(merged(owner, visits, 1)));
+    }
+
+    @Test
+    void addsEmptyVisitsToPetsWithoutAny() throws IOException {
+        OwnerJson ownerJson = merger.readOwner(chunks(owner, 16, BUFFERS)).block();
+
+        JsonNode merged = mapper.readTree(bytes(merger.merge(ownerJson, Flux.empty(), BUFFERS).collectList().block()));
+
+        assertEquals(List.of(1, 2, 3), ownerJson.petIds());
+        assertEquals(0, merged.get("pets").get(2).get("visits").size());
+    }
+
+    @Test
+    void addsEmptyVisitsToPetsWithoutAnId() throws IOException {
+        byte[] ownerWithNewPet = ("{\"id\":1,\"pets\":[{\"name\":\"Nemo\"},{\"id\":2,\"name\":\"Basil\"}]}")
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] visitsOfBasil = visits(List.of(new VisitDetails(7, 2, "2013-01-01", "shot")));
+
+        JsonNode merged = mapper.readTree(merged(ownerWithNewPet, visitsOfBasil, 5));
+
+        assertEquals(0, merged.get("pets").get(0).get("visits").size());
+        assertEquals(7, merged.get("pets").get(1).get("visits").get(0).get("id").asInt());
+    }
+
+    @Test
+    void writesTheOwnerAndEachVisitBeforeTheVisitsBodyEnds() throws IOException {
+        OwnerJson ownerJson = merger.readOwner(chunks(owner, 64, BUFFERS)).block();
+        Sinks.Many<DataBuffer> visitsBody = Sinks.many().unicast().onBackpressureBuffer();
+        List<DataBuffer> written = new ArrayList<>();
+        merger.merge(ownerJson, visitsBody.asFlux(), BUFFERS).subscribe(written::add);
+
+        String ownerUntilFirstPet = new String(bytes(written), StandardCharsets.UTF_8);
+        assertTrue(ownerUntilFirstPet.endsWith("\"name\":\"cat\"}" + ",\"visits\":["), ownerUntilFirstPet);
+
+        int firstVisitEnd = indexOf(visits, "},{") + 1;
+        visitsBody.tryEmitNext(BUFFERS.wrap(ByteBuffer.wrap(visits, 0, firstVisitEnd).slice()));
+        String firstVisit = new String(bytes(written), StandardCharsets.UTF_8);
+        assertTrue(firstVisit.startsWith("{\"id\":0,"), firstVisit);
+
+        visitsBody.tryEmitNext(BUFFERS.wrap(ByteBuffer.wrap(visits, firstVisitEnd, visits.length - firstVisitEnd).slice()));
+        visitsBody.tryEmitComplete();
+        assertTrue(new String(bytes(written), StandardCharsets.UTF_8).endsWith("]}]}"));
+    }
+
+    @Test
+    void releasesTheVisitsAsTheyAreWritten() {
+        DataBufferFactory pooled = new NettyDataBufferFactory(new UnpooledByteBufAllocator(false));
+        List<DataBuffer> ownerChunks = chunks(owner, 64, pooled).collectList().block();
+        List<DataBuffer> visitsChunks = chunks(visits, 512, pooled).collectList().block();
+        OwnerJson ownerJson = merger.readOwner(Flux.fromIterable(ownerChunks)).block();
+
+        // a visit spans a few chunks, the ones before it having been written and released
+        int chunksPerVisit = visits.length / 150 / 512 + 2;
+        AtomicInteger received = new AtomicInteger();
+        List<Integer> heldChunks = new ArrayList<>();
+        List<DataBuffer> written = merger.merge(ownerJson,
+                Flux.fromIterable(visitsChunks)
+                    .doOnNext(chunk -> heldChunks.add(retained(visitsChunks.subList(0, received.getAndIncrement())))),
+                pooled)
+            .collectList().block();
+
+        assertTrue(heldChunks.stream().allMatch(held -> held <= chunksPerVisit),
+            () -> "visits buffers held while merging: " + heldChunks);
+        assertEquals(0, retained(visitsChunks));
+        assertEquals(ownerChunks.size(), retained(ownerChunks));
+        ownerJson.release();
+        assertEquals(0, retained(ownerChunks));
+        written.forEach(DataBufferUtils::release);
+    }
+
+    @Test
+    void rejectsVisitsNotGroupedInThePetsOrder() {
+        OwnerJson ownerJson = merger.readOwner(chunks(owner, 16, BUFFERS)).block();
+        byte[] unordered = visits(List.of(new VisitDetails(1, 2, "2013-01-01", "shot"),
+            new VisitDetails(2, 1, "2013-01-02", "shot")));
+
+        assertThrows(IllegalStateException.class,
+            () -> merger.merge(ownerJson, chunks(unordered, 16, BUFFERS), BUFFERS).blockLast());
+    }
+
+    private byte[] dtoRoundTrip() throws IOException {
+        OwnerDetails details = mapper.readValue(owner, OwnerDetails.class);
+        Map<Integer, List<VisitDetails>> visitsByPetId = mapper.readValue(visits, Visits.class).getVisitsByPetId();
+        details.pets().forEach(pet -> pet.visits().addAll(visitsByPetId.getOrDefault(pet.id(), List.of())));
+        return mapper.writeValueAsBytes(details);
+    }
+
+    private byte[] merged(byte[] ownerJson, byte[] visitsJson, int chunkSize) {
+        OwnerJson owner = merger.readOwner(chunks(ownerJson, chunkSize, BUFFERS)).block();
+        try {
+            return bytes(merger.merge(owner, chunks(visitsJson, chunkSize, BUFFERS), BUFFERS).collectList().block());
+        } finally {
+            owner.release();
+        }
+    }
+
+    private static Flux<DataBuffer> chunks(byte[] json, int chunkSize, DataBufferFactory bufferFactory) {
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int start = 0; start < json.length; start += chunkSize) {
+            chunks.add(bufferFactory.wrap(ByteBuffer.wrap(json, start, Math.min(chunkSize, json.length - start)).slice()));
+        }
+        return Flux.fromIterable(chunks);
+    }
+
+    /**
+     * Reads the buffers written so far, emptying the list.
+     */
+    private static byte[] bytes(List<DataBuffer> buffers) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (DataBuffer buffer : buffers) {
+            byte[] chunk = new byte[buffer.readableByteCount()];
+            buffer.read(chunk);
+            bytes.writeBytes(chunk);
+        }
+        buffers.clear();
+        return bytes.toByteArray();
+    }
+
+    private static int retained(List<DataBuffer> buffers) {
+        return (int) buffers.stream()
+            .map(buffer -> ((NettyDataBuffer) buffer).getNativeBuffer())
+            .mapToInt(ByteBuf::refCnt)
+            .filter(refCnt -> refCnt > 0)
+            .count();
+    }
+
+    /**
+     * Byte offset of an ASCII text.
+     */
+    private static int indexOf(byte[] bytes, String text) {
+        return new String(bytes, StandardCharsets.ISO_8859_1).indexOf(text);
+    }
+
+    private byte[] visits(int perPet, String description) {
+        List<VisitDetails> items = new ArrayList<>();
+        for (int i = 0; i < perPet * 3; i++) {
+            items.add(new VisitDetails(i, 1 + i / perPet, "2013-01-0" + (1 + i % 9), description));
+        }
+        return visits(items);
+    }
+
+    private byte[] visits(List<VisitDetails> items) {
+        try {
+            return mapper.writeValueAsBytes(new Visits(items));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import org.springframework.samples.petclinic.api.system.TimeoutProperties;
+import org.springframework.samples.petclinic.api.system.VisitsTransportProperties;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class RSocketVisitsServiceClientTest {
+
+    private final StubVisitsService visitsService = new StubVisitsService();
+
+    private final ReactiveDiscoveryClient discoveryClient = mock(ReactiveDiscoveryClient.class);
+
+    private final RSocketStrategies strategies = RSocketStrategies.builder()
+        .encoder(new Jackson2CborEncoder())
+        .decoder(new Jackson2CborDecoder())
+        .build();
+
+    private CloseableChannel server;
+
+    private RSocketVisitsServiceClient client;
+
+    @BeforeEach
+    void setUp() {
+        RSocketMessageHandler handler = new RSocketMessageHandler();
+        handler.setRSocketStrategies(strategies);
+        handler.setHandlers(List.of(visitsService));
+        handler.afterPropertiesSet();
+        server = RSocketServer.create(handler.responder())
+            .bind(TcpServerTransport.create("localhost", 0))
+            .block();
+
+        given(discoveryClient.getInstances(VisitsServiceClient.SERVICE_ID)).willReturn(Flux.just(
+            new DefaultServiceInstance("visits-1", VisitsServiceClient.SERVICE_ID, "localhost", 8082, false,
+                Map.of("rsocket-port", String.valueOf(server.address().getPort())))));
+        client = new RSocketVisitsServiceClient(
+            RSocketRequester.builder().rsocketStrategies(strategies).dataMimeType(MediaType.APPLICATION_CBOR),
+            discoveryClient,
+            new VisitsTransportProperties(VisitsTransportProperties.Type.RSOCKET, Duration.ofMinutes(1), "rsocket-port"),
+            new RequestHedgers(new HedgingProperties(Map.of()), new SimpleMeterRegistry()),
+            new AdaptiveTimeouts(new TimeoutProperties(Map.of()), new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.destroy();
+        server.dispose();
+    }
+
+    @Test
+    void getsTheVisitsOfThePetsFromTheRegisteredInstance() {
+        Visits visits = client.getVisitsForPets(List.of(1, 2)).block(Duration.ofSeconds(10));
+
+        assertThat(visitsService.petIds).containsExactly(List.of(1, 2));
+        assertThat(visits.items()).hasSize(150);
+        assertThat(visits.getVisitsByPetId()).containsOnlyKeys(1, 2);
+    }
+
+    @Test
+    void requestsTheVisitsInBatches() {
+        client.getVisitsForPets(List.of(1, 2)).block(Duration.ofSeconds(10));
+
+        assertThat(visitsService.requested)
+            .hasSizeGreaterThan(1)
+            .allMatch(requested -> requested <= RSocketVisitsServiceClient.BATCH_SIZE);
+    }
+
+    static class StubVisitsService {
+
+        final List<List<Integer>> petIds = new CopyOnWriteArrayList<>();
+
+        final List<Long> requested = new CopyOnWriteArrayList<>();
+
+        @MessageMapping(RSocketVisitsServiceClient.ROUTE)
+        Flux<VisitDetails> visits(List<Integer> petIds) {
+            this.petIds.add(petIds);
+            return Flux.range(0, 150)
+                .map(i -> new VisitDetails(i, petIds.get(i % petIds.size()), "2024-01-01", "check-up " + i))
+                .doOnRequest(requested::add);
+        }
+    }
+}
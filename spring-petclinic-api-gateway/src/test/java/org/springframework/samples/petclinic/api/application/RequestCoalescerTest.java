@@ -0,0 +1,51 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RequestCoalescer<Integer, String> coalescer = new RequestCoalescer<>("test", meterRegistry);
+
+    @Test
+    void concurrentCallersShareOneInFlightCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> downstream = Sinks.one();
+
+        CompletableFuture<String> first = coalescer.execute(1, () -> {
+            calls.incrementAndGet();
+            return downstream.asMono();
+        }).toFuture();
+        CompletableFuture<String> second = coalescer.execute(1, () -> {
+            calls.incrementAndGet();
+            return downstream.asMono();
+        }).toFuture();
+
+        downstream.tryEmitValue("George");
+
+        assertEquals("George", first.join());
+        assertEquals("George", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1.0, meterRegistry.get("gateway.coalescer.requests").tag("result", "coalesced").counter().count());
+    }
+
+    @Test
+    void completedCallIsNotReused() {
+        AtomicInteger calls = new AtomicInteger();
+
+        coalescer.execute(1, () -> Mono.fromSupplier(calls::incrementAndGet).map(String::valueOf)).block();
+        String second = coalescer.execute(1, () -> Mono.fromSupplier(calls::incrementAndGet).map(String::valueOf)).block();
+
+        assertEquals("2", second);
+        assertEquals(0.0, meterRegistry.get("gateway.coalescer.requests").tag("result", "coalesced").counter().count());
+    }
+}
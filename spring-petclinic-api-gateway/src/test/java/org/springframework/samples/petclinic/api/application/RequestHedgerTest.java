@@ -0,0 +1,99 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RequestHedger hedger(int budgetBurst) {
+        return hedger(budgetBurst, Duration.ofMillis(20));
+    }
+
+    private RequestHedger hedger(int budgetBurst, Duration maxDelay) {
+        HedgingProperties.Policy policy = new HedgingProperties.Policy(
+            true, 0.95, Duration.ofMillis(5), maxDelay, 0.1, budgetBurst, 100);
+        return new RequestHedger("visits-service", policy, meterRegistry);
+    }
+
+    @Test
+    void slowPrimaryIsRacedByHedge() {
+        AtomicInteger calls = new AtomicInteger();
+        RequestHedger hedger = hedger(10);
+
+        String result = hedger.hedge(() -> calls.incrementAndGet() == 1
+            ? Mono.just("slow").delayElement(Duration.ofSeconds(5))
+            : Mono.just("fast")).block(Duration.ofSeconds(1));
+
+        assertEquals("fast", result);
+        assertEquals(2, calls.get());
+        assertEquals(1.0, meterRegistry.get("gateway.hedging.hedges").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger(10).hedge(() -> Mono.fromSupplier(() -> "fast" + calls.incrementAndGet()))
+            .block(Duration.ofSeconds(1));
+
+        assertEquals("fast1", result);
+        assertEquals(0.0, meterRegistry.get("gateway.hedging.hedges").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void exhaustedBudgetDeniesHedge() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger(0).hedge(() -> Mono.just("slow" + calls.incrementAndGet()).delayElement(Duration.ofMillis(100)))
+            .block(Duration.ofSeconds(1));
+
+        assertEquals("slow1", result);
+        assertEquals(1.0, meterRegistry.get("gateway.hedging.hedges").tag("result", "denied").counter().count());
+    }
+
+    @Test
+    void failedPrimaryDoesNotWaitForTheHedge() {
+        AtomicInteger calls = new AtomicInteger();
+        RequestHedger hedger = hedger(10, Duration.ofSeconds(5));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> hedger.hedge(() -> calls.incrementAndGet() == 1
+            ? Mono.<String>error(new ConnectException("Connection refused"))
+            : Mono.just("hedge")).block(Duration.ofSeconds(1)));
+
+        assertInstanceOf(ConnectException.class, Exceptions.unwrap(error));
+        assertEquals(1, calls.get());
+        assertEquals(0.0, meterRegistry.get("gateway.hedging.hedges").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void emptyPrimaryStaysEmpty() {
+        String result = hedger(10).hedge(Mono::<String>empty).block(Duration.ofSeconds(1));
+
+        assertNull(result);
+    }
+
+    @Test
+    void hedgedPrimaryFailureWaitsForTheHedge() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger(10).hedge(() -> calls.incrementAndGet() == 1
+            ? Mono.<String>error(new ConnectException("Connection refused")).delaySubscription(Duration.ofMillis(50))
+            : Mono.just("hedge").delayElement(Duration.ofMillis(100))).block(Duration.ofSeconds(1));
+
+        assertEquals("hedge", result);
+    }
+}
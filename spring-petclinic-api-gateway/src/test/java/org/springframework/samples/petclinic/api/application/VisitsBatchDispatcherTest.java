@@ -0,0 +1,106 @@
+package org.springframework.samples.petclinic.api.application;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.samples.petclinic.api.system.VisitsBatchProperties;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VisitsBatchDispatcherTest {
+
+    private final VisitsServiceClient visitsServiceClient = Mockito.mock(VisitsServiceClient.class);
+
+    @Test
+    void lookupsWithinTheWindowAreMergedAndSplitByPetId() {
+        VisitsBatchDispatcher dispatcher = new VisitsBatchDispatcher(visitsServiceClient,
+            new VisitsBatchProperties(true, Duration.ofMillis(50), 100), new SimpleMeterRegistry());
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(1, 2, 3)))
+            .thenReturn(Mono.just(new Visits(List.of(
+                new VisitDetails(10, 1, null, "first"),
+                new VisitDetails(20, 3, null, "third"),
+                new VisitDetails(30, 2, null, "second")))));
+
+        CompletableFuture<Visits> owner1 = dispatcher.getVisitsForPets(List.of(1, 2)).toFuture();
+        CompletableFuture<Visits> owner2 = dispatcher.getVisitsForPets(List.of(3)).toFuture();
+
+        assertEquals(List.of(10, 30), owner1.join().items().stream().map(VisitDetails::id).toList());
+        assertEquals(List.of(20), owner2.join().items().stream().map(VisitDetails::id).toList());
+        Mockito.verify(visitsServiceClient, Mockito.times(1)).getVisitsForPets(Mockito.anyList());
+    }
+
+    @Test
+    void fullBatchIsDispatchedWithoutWaitingForTheWindow() {
+        VisitsBatchDispatcher dispatcher = new VisitsBatchDispatcher(visitsServiceClient,
+            new VisitsBatchProperties(true, Duration.ofMinutes(1), 2), new SimpleMeterRegistry());
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(1, 2)))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(10, 2, null, "checkup")))));
+
+        Visits visits = dispatcher.getVisitsForPets(List.of(1, 2)).block(Duration.ofSeconds(5));
+
+        assertEquals(1, visits.items().size());
+    }
+
+    @Test
+    void lookupLargerThanTheBatchIsSplitIntoSeveralCalls() {
+        VisitsBatchDispatcher dispatcher = new VisitsBatchDispatcher(visitsServiceClient,
+            new VisitsBatchProperties(true, Duration.ofMillis(1), 2), new SimpleMeterRegistry());
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(1, 2)))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(10, 1, null, "first")))));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(3)))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(30, 3, null, "third")))));
+
+        Visits visits = dispatcher.getVisitsForPets(List.of(1, 2, 3)).block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(10, 30), visits.items().stream().map(VisitDetails::id).toList());
+    }
+
+    @Test
+    void batchedCallIsCancelledOnceAllItsLookupsAre() throws InterruptedException {
+        VisitsBatchDispatcher dispatcher = new VisitsBatchDispatcher(visitsServiceClient,
+            new VisitsBatchProperties(true, Duration.ofMillis(1), 100), new SimpleMeterRegistry());
+        CountDownLatch callCancelled = new CountDownLatch(1);
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(1, 2)))
+            .thenReturn(Mono.<Visits>never().doOnCancel(callCancelled::countDown));
+
+        Disposable owner1 = dispatcher.getVisitsForPets(List.of(1)).subscribe();
+        Disposable owner2 = dispatcher.getVisitsForPets(List.of(2)).subscribe();
+        Mockito.verify(visitsServiceClient, Mockito.timeout(5000)).getVisitsForPets(List.of(1, 2));
+
+        owner1.dispose();
+        assertFalse(callCancelled.await(100, TimeUnit.MILLISECONDS));
+        owner2.dispose();
+        assertTrue(callCancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lookupCancelledBeforeTheWindowEndsIsNotSent() {
+        VisitsBatchDispatcher dispatcher = new VisitsBatchDispatcher(visitsServiceClient,
+            new VisitsBatchProperties(true, Duration.ofMillis(50), 100), new SimpleMeterRegistry());
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(2)))
+            .thenReturn(Mono.just(new Visits(List.of())));
+
+        dispatcher.getVisitsForPets(List.of(1)).subscribe().dispose();
+        dispatcher.getVisitsForPets(List.of(2)).block(Duration.ofSeconds(5));
+
+        Mockito.verify(visitsServiceClient, Mockito.never()).getVisitsForPets(List.of(1, 2));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.dto.PetType;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the encode/decode cost of the service-to-service formats on the {@link Visits} and
+ * {@link OwnerDetails} bodies the gateway reads from the visits and customers services.
+ * <p>
+ * Run it from the root directory, after {@code ./mvnw install -DskipTests}, with:
+ * <pre>
+ * ./mvnw -q -pl spring-petclinic-api-gateway test-compile exec:exec -Dexec.executable=java \
+ *     -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.openjdk.jmh.Main CodecBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    private static final Map<String, JsonFactory> FORMATS = Map.of(
+        "json", new JsonFactory(),
+        "smile", new SmileFactory(),
+        "cbor", new CBORFactory());
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    /**
+     * {@code visits}: 50 visits, {@code owner}: 4 pets with 10 visits each.
+     */
+    @Param({"visits", "owner"})
+    public String payload;
+
+    private ObjectMapper mapper;
+
+    private Object value;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper(FORMATS.get(format))
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        value = "visits".equals(payload) ? visits(1, 50) : owner(4, 10);
+        encoded = mapper.writeValueAsBytes(value);
+        Object decoded = mapper.readValue(encoded, value.getClass());
+        if (!value.equals(decoded)) {
+            throw new IllegalStateException("Round trip changed the payload: " + decoded);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return mapper.readValue(encoded, value.getClass());
+    }
+
+    private static Visits visits(int petId, int count) {
+        List<VisitDetails> items = new ArrayList<>(count);
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < count; i++) {
+            items.add(new VisitDetails(petId * 1_000 + i, petId, date.plusDays(i * 7L).toString(),
+                "Yearly check-up and vaccination, visit " + i));
+        }
+        return new Visits(items);
+    }
+
+    private static OwnerDetails owner(int pets, int visitsPerPet) {
+        List<PetDetails> petDetails = new ArrayList<>(pets);
+        for (int petId = 1; petId <= pets; petId++) {
+            petDetails.add(new PetDetails(petId, "Pet " + petId, "2020-0" + petId + "-15", new PetType(1, "cat"),
+                visits(petId, visitsPerPet).items()));
+        }
+        return new OwnerDetails(1, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023", petDetails);
+    }
+}
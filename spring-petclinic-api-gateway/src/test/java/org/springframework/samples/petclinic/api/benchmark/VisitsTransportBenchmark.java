@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.api.benchmark;
+
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.samples.petclinic.api.dto.VisitDetails;
+import org.springframework.samples.petclinic.api.dto.Visits;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Compares the latency and throughput of visits lookups over HTTP ({@code GET pets/visits}) and over RSocket
+ * ({@code pets.visits} request-stream) against a running visits-service, both with CBOR bodies so that only the
+ * transport differs.
+ * <p>
+ * Each transport gets a warm-up round and then {@code requests} lookups of two random pets of the sample data,
+ * {@code concurrency} of them in flight at any time. HTTP uses a connection pool, RSocket a single multiplexed
+ * connection. Run it from the root directory with:
+ * <pre>
+ * ./mvnw -q -pl spring-petclinic-api-gateway test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.springframework.samples.petclinic.api.benchmark.VisitsTransportBenchmark \
+ *     -Dexec.args="localhost 8082 7000 64 20000"
+ * </pre>
+ */
+public final class VisitsTransportBenchmark {
+
+    private static final int SAMPLE_PETS = 13;
+
+    private VisitsTransportBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 8082;
+        int rsocketPort = args.length > 2 ? Integer.parseInt(args[2]) : 7000;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int requests = args.length > 4 ? Integer.parseInt(args[4]) : 20_000;
+
+        WebClient webClient = WebClient.builder()
+            .baseUrl("http://" + host + ":" + httpPort)
+            .codecs(codecs -> codecs.customCodecs().register(new Jackson2CborDecoder()))
+            .build();
+        RSocketRequester requester = RSocketRequester.builder()
+            .rsocketStrategies(RSocketStrategies.builder()
+                .encoder(new Jackson2CborEncoder())
+                .decoder(new Jackson2CborDecoder())
+                .build())
+            .dataMimeType(MediaType.APPLICATION_CBOR)
+            .transport(TcpClientTransport.create(host, rsocketPort));
+
+        Function<List<Integer>, Mono<Visits>> http = petIds -> webClient.get()
+            .uri(uri -> uri.path("/pets/visits").queryParam("petId", petIds.get(0) + "," + petIds.get(1)).build())
+            .accept(MediaType.APPLICATION_CBOR)
+            .retrieve()
+            .bodyToMono(Visits.class);
+        Function<List<Integer>, Mono<Visits>> rsocket = petIds -> requester.route("pets.visits")
+            .data(petIds)
+            .retrieveFlux(VisitDetails.class)
+            .collectList()
+            .map(Visits::new);
+
+        System.out.printf("%d lookups per transport, %d concurrent%n", requests, concurrency);
+        System.out.printf("%-8s %10s %10s %10s %10s %8s%n", "", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        run(http, concurrency, requests / 10);
+        run(rsocket, concurrency, requests / 10);
+        print("http", run(http, concurrency, requests));
+        print("rsocket", run(rsocket, concurrency, requests));
+        requester.dispose();
+    }
+
+    private static Result run(Function<List<Integer>, Mono<Visits>> lookup, int concurrency, int requests) {
+        long[] latencies = new long[requests];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        Flux.range(0, requests)
+            .flatMap(i -> Mono.defer(() -> {
+                long sent = System.nanoTime();
+                return lookup.apply(randomPets())
+                    .doOnSuccess(visits -> latencies[completed.getAndIncrement()] = System.nanoTime() - sent);
+            }).onErrorResume(e -> {
+                errors.incrementAndGet();
+                return Mono.empty();
+            }), concurrency)
+            .blockLast();
+        long elapsed = System.nanoTime() - start;
+        long[] observed = Arrays.copyOf(latencies, completed.get());
+        Arrays.sort(observed);
+        return new Result(completed.get() * 1e9 / elapsed, percentile(observed, 0.5), percentile(observed, 0.99),
+            observed.length == 0 ? 0 : observed[observed.length - 1] / 1e6, errors.get());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+    }
+
+    private static List<Integer> randomPets() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return List.of(random.nextInt(1, SAMPLE_PETS + 1), random.nextInt(1, SAMPLE_PETS + 1));
+    }
+
+    private static void print(String transport, Result result) {
+        System.out.printf("%-8s %10.0f %10.2f %10.2f %10.2f %8d%n", transport, result.throughput(),
+            result.p50Millis(), result.p99Millis(), result.maxMillis(), result.errors());
+    }
+
+    record Result(double throughput, double p50Millis, double p99Millis, double maxMillis, int errors) {
+    }
+}
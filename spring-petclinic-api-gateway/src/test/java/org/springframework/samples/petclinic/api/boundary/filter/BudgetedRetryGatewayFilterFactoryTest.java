@@ -0,0 +1,167 @@
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BudgetedRetryGatewayFilterFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final BudgetedRetryGatewayFilterFactory factory = new BudgetedRetryGatewayFilterFactory(meterRegistry);
+
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+
+    private static BudgetedRetryGatewayFilterFactory.Config config(double budgetRatio, int budgetBurst) {
+        BudgetedRetryGatewayFilterFactory.Config config = new BudgetedRetryGatewayFilterFactory.Config();
+        config.setRouteId("visits-service");
+        config.setFirstBackoff(Duration.ofMillis(1));
+        config.setMaxBackoff(Duration.ofMillis(1));
+        config.setBudgetRatio(budgetRatio);
+        config.setBudgetBurst(budgetBurst);
+        return config;
+    }
+
+    /**
+     * Answers with the given statuses in turn, the last one repeated.
+     */
+    private GatewayFilterChain downstream(HttpStatus... statuses) {
+        Deque<HttpStatus> answers = new ArrayDeque<>(List.of(statuses));
+        return exchange -> {
+            downstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(answers.size() > 1 ? answers.poll() : answers.peek());
+            return Mono.empty();
+        };
+    }
+
+    private static MockServerWebExchange request(HttpMethod method) {
+        return MockServerWebExchange.from(MockServerHttpRequest.method(method, "/api/visit/pets/visits?petId=7"));
+    }
+
+    private double retries(String result) {
+        return meterRegistry.get("gateway.retry.requests").tag("route", "visits-service").tag("result", result)
+            .counter().count();
+    }
+
+    @Test
+    void retriesUnavailableDownstreamUntilItAnswers() {
+        GatewayFilter filter = factory.apply(config(0.1, 10));
+        MockServerWebExchange exchange = request(HttpMethod.GET);
+
+        filter.filter(exchange, downstream(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK)).block();
+
+        assertEquals(2, downstreamCalls.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals(1.0, retries("attempted"));
+        assertEquals(1.0, retries("succeeded"));
+    }
+
+    @Test
+    void spentBudgetStopsRetries() {
+        GatewayFilter filter = factory.apply(config(0.5, 1));
+        GatewayFilterChain unavailable = downstream(HttpStatus.SERVICE_UNAVAILABLE);
+
+        filter.filter(request(HttpMethod.GET), unavailable).block();
+        assertEquals(2, downstreamCalls.get());
+
+        MockServerWebExchange denied = request(HttpMethod.GET);
+        filter.filter(denied, unavailable).block();
+
+        assertEquals(3, downstreamCalls.get());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, denied.getResponse().getStatusCode());
+        assertEquals(1.0, retries("attempted"));
+        assertEquals(2.0, retries("denied"));
+    }
+
+    @Test
+    void successfulResponsesRefillTheBudget() {
+        GatewayFilter filter = factory.apply(config(0.5, 1));
+        GatewayFilterChain unavailable = downstream(HttpStatus.SERVICE_UNAVAILABLE);
+        filter.filter(request(HttpMethod.GET), unavailable).block();
+
+        filter.filter(request(HttpMethod.GET), downstream(HttpStatus.OK)).block();
+        filter.filter(request(HttpMethod.GET), downstream(HttpStatus.OK)).block();
+        downstreamCalls.set(0);
+        filter.filter(request(HttpMethod.GET), unavailable).block();
+
+        assertEquals(2, downstreamCalls.get());
+        assertEquals(2.0, retries("attempted"));
+    }
+
+    @Test
+    void unsafeMethodsAreNeverRetried() {
+        BudgetedRetryGatewayFilterFactory.Config config = config(0.1, 10);
+        config.setMethods(List.of(HttpMethod.GET, HttpMethod.POST));
+
+        factory.apply(config).filter(request(HttpMethod.POST), downstream(HttpStatus.SERVICE_UNAVAILABLE)).block();
+
+        assertEquals(1, downstreamCalls.get());
+    }
+
+    @Test
+    void nonRetryableStatusIsRelayed() {
+        MockServerWebExchange exchange = request(HttpMethod.GET);
+
+        factory.apply(config(0.1, 10)).filter(exchange, downstream(HttpStatus.INTERNAL_SERVER_ERROR)).block();
+
+        assertEquals(1, downstreamCalls.get());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exchange.getResponse().getStatusCode());
+        assertEquals(0.0, retries("attempted"));
+    }
+
+    @Test
+    void onlyConfiguredExceptionsAreRetried() {
+        GatewayFilter filter = factory.apply(config(0.1, 10));
+        GatewayFilterChain refused = exchange -> {
+            downstreamCalls.incrementAndGet();
+            return Mono.error(new IOException("Connection refused"));
+        };
+        GatewayFilterChain broken = exchange -> {
+            downstreamCalls.incrementAndGet();
+            return Mono.error(new IllegalStateException("broken"));
+        };
+
+        assertThrows(RuntimeException.class, () -> filter.filter(request(HttpMethod.GET), refused).block());
+        assertEquals(3, downstreamCalls.get());
+
+        downstreamCalls.set(0);
+        assertThrows(IllegalStateException.class, () -> filter.filter(request(HttpMethod.GET), broken).block());
+        assertEquals(1, downstreamCalls.get());
+    }
+
+    @Test
+    void backoffIsJitteredBelowTheExponentialCeiling() {
+        BudgetedRetryGatewayFilterFactory.Config config = new BudgetedRetryGatewayFilterFactory.Config();
+        config.setFirstBackoff(Duration.ofMillis(20));
+        config.setMaxBackoff(Duration.ofMillis(500));
+        Set<Duration> firstBackoffs = new HashSet<>();
+
+        for (int i = 0; i < 1000; i++) {
+            Duration first = BudgetedRetryGatewayFilterFactory.backoff(config, 0);
+            firstBackoffs.add(first);
+            assertTrue(first.toMillis() <= 20, first::toString);
+            assertTrue(BudgetedRetryGatewayFilterFactory.backoff(config, 2).toMillis() <= 80);
+            assertTrue(BudgetedRetryGatewayFilterFactory.backoff(config, 40).toMillis() <= 500);
+        }
+        assertTrue(firstBackoffs.size() > 10, "backoff is not jittered: " + firstBackoffs);
+    }
+}
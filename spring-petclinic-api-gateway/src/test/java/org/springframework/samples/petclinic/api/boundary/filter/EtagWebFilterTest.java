@@ -0,0 +1,101 @@
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EtagWebFilterTest {
+
+    private static final String OWNER = "{\"id\":1,\"firstName\":\"George\"}";
+
+    private final EtagWebFilter filter = new EtagWebFilter();
+
+    @Test
+    void tagsJsonWithAWeakEtag() {
+        MockServerWebExchange exchange = exchange(null);
+
+        filter.filter(exchange, writing(MediaType.APPLICATION_JSON, OWNER)).block();
+
+        String etag = exchange.getResponse().getHeaders().getETag();
+        assertTrue(etag.matches("W/\"0[0-9a-f]{32}\""), etag);
+        assertEquals(OWNER, exchange.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void answersNotModifiedWhenTheEtagMatches() {
+        MockServerWebExchange first = exchange(null);
+        filter.filter(first, writing(MediaType.APPLICATION_JSON, OWNER)).block();
+        String etag = first.getResponse().getHeaders().getETag();
+
+        MockServerWebExchange second = exchange(etag);
+        filter.filter(second, writing(MediaType.APPLICATION_JSON, OWNER)).block();
+
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getResponse().getStatusCode());
+        assertEquals("", second.getResponse().getBodyAsString().defaultIfEmpty("").block());
+    }
+
+    @Test
+    void leavesStreamingHandlersAlone() {
+        MockServerWebExchange exchange = exchange(null);
+        AtomicInteger chunksWritten = new AtomicInteger();
+        WebFilterChain streaming = ex -> {
+            ex.getAttributes().put(EtagWebFilter.STREAMING_ATTR, true);
+            ex.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return ex.getResponse().writeWith(Flux.just("{\"id\":1,", "\"pets\":[]}")
+                .map(chunk -> buffer(ex, chunk))
+                .doOnNext(chunk -> chunksWritten.incrementAndGet()));
+        };
+
+        filter.filter(exchange, streaming).block();
+
+        assertNull(exchange.getResponse().getHeaders().getETag());
+        assertEquals(-1, exchange.getResponse().getHeaders().getContentLength());
+        assertEquals("{\"id\":1,\"pets\":[]}", exchange.getResponse().getBodyAsString().block());
+        assertEquals(2, chunksWritten.get());
+    }
+
+    @Test
+    void leavesStreamingMediaTypesAlone() {
+        for (MediaType streaming : new MediaType[] {MediaType.APPLICATION_NDJSON, new MediaType("application", "stream+json")}) {
+            MockServerWebExchange exchange = exchange(null);
+
+            filter.filter(exchange, writing(streaming, OWNER + "\n")).block();
+
+            assertNull(exchange.getResponse().getHeaders().getETag(), streaming::toString);
+        }
+    }
+
+    private static MockServerWebExchange exchange(String ifNoneMatch) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/gateway/owners/1");
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    private static WebFilterChain writing(MediaType contentType, String body) {
+        return exchange -> {
+            exchange.getResponse().getHeaders().setContentType(contentType);
+            return exchange.getResponse().writeWith(Mono.just(buffer(exchange, body)));
+        };
+    }
+
+    private static DataBuffer buffer(ServerWebExchange exchange, String content) {
+        return exchange.getResponse().bufferFactory().wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
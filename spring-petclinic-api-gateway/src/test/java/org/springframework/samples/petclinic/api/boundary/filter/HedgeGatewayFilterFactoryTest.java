@@ -0,0 +1,123 @@
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.samples.petclinic.api.application.RequestHedgers;
+import org.springframework.samples.petclinic.api.system.HedgingProperties;
+import org.springframework.samples.petclinic.api.system.LatencyAwareLoadBalancer;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+class HedgeGatewayFilterFactoryTest {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private final List<Object> excludedInstances = new CopyOnWriteArrayList<>();
+
+    private GatewayFilter filter(Duration maxDelay) {
+        HedgingProperties.Policy policy = new HedgingProperties.Policy(
+            true, 0.95, Duration.ofMillis(5), maxDelay, 0.1, 10, 100);
+        RequestHedgers hedgers = new RequestHedgers(
+            new HedgingProperties(Map.of("visits-service", policy)), new SimpleMeterRegistry());
+        return new HedgeGatewayFilterFactory(hedgers, mock(LoadBalancerClientFactory.class)).apply(new Object());
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/visit/pets/visits?petId=7"));
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create("lb://visits-service/pets/visits?petId=7"));
+        return exchange;
+    }
+
+    /**
+     * Stands for the load balancer and Netty routing filters: picks instance {@code visits-<attempt>} and writes
+     * its name as the body.
+     */
+    private Mono<Void> route(ServerWebExchange exchange, Mono<Void> beforeResponse) {
+        int attempt = attempts.incrementAndGet();
+        ServiceInstance instance = new DefaultServiceInstance(
+            "visits-" + attempt, "visits-service", "visits-" + attempt, 8080, false);
+        Object excluded = exchange.getAttribute(LatencyAwareLoadBalancer.EXCLUDED_INSTANCE_ATTR);
+        if (excluded != null) {
+            excludedInstances.add(excluded);
+        }
+        exchange.getAttributes().put(GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(instance));
+        return beforeResponse.then(Mono.defer(() -> {
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            exchange.getResponse().getHeaders().set("X-Instance", instance.getInstanceId());
+            byte[] body = instance.getInstanceId().getBytes(StandardCharsets.UTF_8);
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+        }));
+    }
+
+    @Test
+    void slowPrimaryLosesToAHedgeOnAnotherInstance() {
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        GatewayFilterChain chain = exchange -> attempts.get() == 0
+            ? route(exchange, Mono.delay(Duration.ofSeconds(5)).then().doOnCancel(() -> primaryCancelled.set(true)))
+            : route(exchange, Mono.empty());
+        MockServerWebExchange exchange = exchange();
+
+        filter(Duration.ofMillis(20)).filter(exchange, chain).block(Duration.ofSeconds(1));
+
+        assertEquals(2, attempts.get());
+        assertEquals("visits-2", exchange.getResponse().getBodyAsString().block());
+        assertEquals("visits-2", exchange.getResponse().getHeaders().getFirst("X-Instance"));
+        assertEquals(1, excludedInstances.size());
+        assertEquals("visits-1", ((ServiceInstance) excludedInstances.get(0)).getInstanceId());
+        assertTrue(primaryCancelled.get());
+    }
+
+    @Test
+    void fastPrimaryIsStreamedWithoutHedge() {
+        MockServerWebExchange exchange = exchange();
+
+        filter(Duration.ofMillis(200)).filter(exchange, ex -> route(ex, Mono.empty())).block(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+        assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        assertEquals("visits-1", exchange.getResponse().getBodyAsString().block());
+        assertNull(exchange.getAttribute(LatencyAwareLoadBalancer.EXCLUDED_INSTANCE_ATTR));
+    }
+
+    @Test
+    void failedPrimaryIsRelayedWithoutWaitingForTheHedge() {
+        GatewayFilterChain chain = exchange -> attempts.incrementAndGet() == 1
+            ? Mono.error(new ConnectException("Connection refused"))
+            : route(exchange, Mono.empty());
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+            () -> filter(Duration.ofSeconds(5)).filter(exchange(), chain).block(Duration.ofSeconds(1)));
+
+        assertInstanceOf(ConnectException.class, Exceptions.unwrap(error));
+        assertEquals(1, attempts.get());
+    }
+}
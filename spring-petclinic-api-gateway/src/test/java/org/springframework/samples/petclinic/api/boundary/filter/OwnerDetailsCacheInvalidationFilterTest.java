@@ -0,0 +1,57 @@
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsCache;
+import org.springframework.samples.petclinic.api.dto.OwnerDetails;
+import org.springframework.samples.petclinic.api.dto.PetDetails;
+import org.springframework.samples.petclinic.api.system.OwnerDetailsCacheProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OwnerDetailsCacheInvalidationFilterTest {
+
+    private final OwnerDetailsCache cache =
+        new OwnerDetailsCache(new OwnerDetailsCacheProperties(true, Duration.ofMinutes(1), 10), new SimpleMeterRegistry());
+
+    private final OwnerDetailsCacheInvalidationFilter filter = new OwnerDetailsCacheInvalidationFilter(cache);
+
+    private final GatewayFilterChain downstream = exchange -> Mono.empty();
+
+    @BeforeEach
+    void cacheOwner() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails().id(20).name("Garfield").build();
+        OwnerDetails owner = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails().id(1).pets(List.of(cat)).build();
+        cache.put(1, owner, cache.generation());
+    }
+
+    @Test
+    void ownerUpdateEvictsTheOwner() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.put("/api/customer/owners/1")), downstream).block();
+
+        assertNull(cache.get(1).block());
+    }
+
+    @Test
+    void newVisitEvictsTheOwnerOfThePet() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/api/visit/owners/*/pets/20/visits")), downstream).block();
+
+        assertNull(cache.get(1).block());
+    }
+
+    @Test
+    void readsKeepTheOwner() {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/customer/owners/1")), downstream).block();
+
+        assertNotNull(cache.get(1).block());
+    }
+}
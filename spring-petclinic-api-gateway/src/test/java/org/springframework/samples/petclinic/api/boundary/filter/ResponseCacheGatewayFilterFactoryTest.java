@@ -0,0 +1,89 @@
+package org.springframework.samples.petclinic.api.boundary.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.samples.petclinic.api.system.GatewayResponseCache;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseCacheGatewayFilterFactoryTest {
+
+    private final ResponseCacheGatewayFilterFactory factory =
+        new ResponseCacheGatewayFilterFactory(new GatewayResponseCache(new SimpleMeterRegistry()));
+
+    private final AtomicInteger downstreamCalls = new AtomicInteger();
+
+    @Test
+    void servesRepeatedRequestsFromTheCache() {
+        GatewayFilter filter = filter("vets-service");
+        GatewayFilterChain downstream = downstream("[{\"id\":1}]", null);
+
+        MockServerWebExchange miss = get("/api/vet/vets");
+        filter.filter(miss, downstream).block();
+        MockServerWebExchange hit = get("/api/vet/vets");
+        filter.filter(hit, downstream).block();
+
+        assertEquals(1, downstreamCalls.get());
+        assertEquals("MISS", miss.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.CACHE_STATUS_HEADER));
+        assertEquals("HIT", hit.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.CACHE_STATUS_HEADER));
+        assertEquals("[{\"id\":1}]", hit.getResponse().getBodyAsString().block());
+        assertEquals(MediaType.APPLICATION_JSON, hit.getResponse().getHeaders().getContentType());
+    }
+
+    @Test
+    void honoursNoStoreFromDownstream() {
+        GatewayFilter filter = filter("customers-pet-types");
+        GatewayFilterChain downstream = downstream("[]", "no-store");
+
+        filter.filter(get("/api/customer/petTypes"), downstream).block();
+        filter.filter(get("/api/customer/petTypes"), downstream).block();
+
+        assertEquals(2, downstreamCalls.get());
+    }
+
+    @Test
+    void keysEntriesByVaryHeaders() {
+        GatewayFilter filter = filter("vets-service");
+        GatewayFilterChain downstream = downstream("[]", null);
+
+        filter.filter(get("/api/vet/vets"), downstream).block();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/vet/vets")
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_XML_VALUE)), downstream).block();
+
+        assertEquals(2, downstreamCalls.get());
+    }
+
+    private GatewayFilter filter(String routeId) {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setRouteId(routeId);
+        return factory.apply(config);
+    }
+
+    private GatewayFilterChain downstream(String body, String cacheControl) {
+        return exchange -> {
+            downstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            if (cacheControl != null) {
+                exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+            }
+            return exchange.getResponse().writeWith(Mono.just(
+                exchange.getResponse().bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8))));
+        };
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+    }
+}
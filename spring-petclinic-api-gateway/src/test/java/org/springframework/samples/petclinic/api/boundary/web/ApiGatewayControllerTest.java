@@ -1,5 +1,7 @@
 package org.springframework.samples.petclinic.api.boundary.web;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
@@ -8,7 +10,12 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JAutoConfiguration;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.samples.petclinic.api.application.CustomersServiceClient;
+import org.springframework.samples.petclinic.api.application.LastKnownVisits;
+import org.springframework.samples.petclinic.api.application.OwnerDetailsCache;
+import org.springframework.samples.petclinic.api.application.VetsServiceClient;
+import org.springframework.samples.petclinic.api.application.VisitsBatchDispatcher;
 import org.springframework.samples.petclinic.api.application.VisitsServiceClient;
 import org.springframework.samples.petclinic.api.dto.*;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -22,7 +29,8 @@ import java.util.List;
 
 @ExtendWith(SpringExtension.class)
 @WebFluxTest(controllers = ApiGatewayController.class)
-@Import({ReactiveResilience4JAutoConfiguration.class, CircuitBreakerConfiguration.class})
+@Import({ReactiveResilience4JAutoConfiguration.class, CircuitBreakerConfiguration.class,
+    OwnerDetailsCache.class, LastKnownVisits.class, VisitsBatchDispatcher.class, SimpleMeterRegistry.class})
 class ApiGatewayControllerTest {
 
     @MockBean
@@ -31,9 +39,23 @@ class ApiGatewayControllerTest {
     @MockBean
     private VisitsServiceClient visitsServiceClient;
 
+    @MockBean
+    private VetsServiceClient vetsServiceClient;
+
+    @Autowired
+    private OwnerDetailsCache ownerDetailsCache;
+
+    @Autowired
+    private LastKnownVisits lastKnownVisits;
+
     @Autowired
     private WebTestClient client;
 
+    @BeforeEach
+    void clearCache() {
+        ownerDetailsCache.evictAll();
+        lastKnownVisits.evictAll();
+    }
 
     @Test
     void getOwnerDetails_withAvailableVisitsService() {
@@ -94,4 +116,237 @@ class ApiGatewayControllerTest {
             .jsonPath("$.pets[0].visits").isEmpty();
     }
 
+    @Test
+    void getOwnerDetails_servesLastKnownVisitsWhenVisitsServiceFails() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .visits(new ArrayList<>())
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenAnswer(invocation -> Mono.just(OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+                .id(1)
+                .pets(List.of(PetDetails.PetDetailsBuilder.aPetDetails().id(cat.id()).name(cat.name()).visits(new ArrayList<>()).build()))
+                .build()));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.id())))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(300, cat.id(), null, "First visit")))))
+            .thenReturn(Mono.error(new ConnectException("Simulate error")));
+
+        client.get().uri("/api/gateway/owners/1").exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist(ApiGatewayController.VISITS_STALE_SINCE_HEADER);
+        ownerDetailsCache.evictAll();
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().exists(ApiGatewayController.VISITS_STALE_SINCE_HEADER)
+            .expectBody()
+            .jsonPath("$.pets[0].visits[0].description").isEqualTo("First visit");
+    }
+
+    @Test
+    void getOwnerDetails_returnsOnlySelectedFields() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .birthDate("2010-09-07")
+            .visits(new ArrayList<>())
+            .build();
+        OwnerDetails owner = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .firstName("Jon")
+            .telephone("6085551023")
+            .pets(List.of(cat))
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.id())))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(300, cat.id(), "2013-01-01", "rabies shot")))));
+
+        client.get()
+            .uri("/api/gateway/owners/1?fields=firstName,pets.name,pets.visits.date")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.firstName").isEqualTo("Jon")
+            .jsonPath("$.telephone").doesNotExist()
+            .jsonPath("$.pets[0].name").isEqualTo("Garfield")
+            .jsonPath("$.pets[0].birthDate").doesNotExist()
+            .jsonPath("$.pets[0].visits[0].date").isEqualTo("2013-01-01")
+            .jsonPath("$.pets[0].visits[0].description").doesNotExist();
+    }
+
+    @Test
+    void getOwnerPage_marksFailedSectionsAndKeepsTheOthers() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .visits(new ArrayList<>())
+            .build();
+        OwnerDetails owner = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .pets(List.of(cat))
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.id())))
+            .thenReturn(Mono.just(new Visits(List.of(new VisitDetails(300, cat.id(), null, "First visit")))));
+        Mockito
+            .when(customersServiceClient.getPetTypes())
+            .thenReturn(Mono.just(List.of(new PetType(1, "cat"))));
+        Mockito
+            .when(vetsServiceClient.getVets())
+            .thenReturn(Mono.error(new ConnectException("Simulate error")));
+
+        client.get()
+            .uri("/api/gateway/owners/1/page")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$.owner.status").isEqualTo("OK")
+            .jsonPath("$.owner.data.pets[0].visits[0].description").isEqualTo("First visit")
+            .jsonPath("$.petTypes.status").isEqualTo("OK")
+            .jsonPath("$.petTypes.data[0].name").isEqualTo("cat")
+            .jsonPath("$.vets.status").isEqualTo("FAILED")
+            .jsonPath("$.vets.data").doesNotExist();
+    }
+
+    @Test
+    void getOwnerDetails_notModifiedWhenEtagMatches() {
+        OwnerDetails owner = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .pets(List.of())
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+
+        String etag = client.get().uri("/api/gateway/owners/1").exchange()
+            .expectStatus().isOk()
+            .expectHeader().exists(HttpHeaders.ETAG)
+            .returnResult(String.class)
+            .getResponseHeaders().getETag();
+
+        client.get()
+            .uri("/api/gateway/owners/1")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .exchange()
+            .expectStatus().isNotModified()
+            .expectBody().isEmpty();
+    }
+
+    @Test
+    void getOwnerDetails_servedFromCacheUntilEvicted() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .visits(new ArrayList<>())
+            .build();
+        OwnerDetails owner = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .pets(List.of(cat))
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(owner));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(Collections.singletonList(cat.id())))
+            .thenReturn(Mono.just(new Visits(List.of())));
+
+        client.get().uri("/api/gateway/owners/1").exchange().expectStatus().isOk();
+        client.get().uri("/api/gateway/owners/1").exchange().expectStatus().isOk();
+        Mockito.verify(customersServiceClient, Mockito.times(1)).getOwner(1);
+
+        ownerDetailsCache.evictOwnerOfPet(cat.id());
+
+        client.get().uri("/api/gateway/owners/1").exchange().expectStatus().isOk();
+        Mockito.verify(customersServiceClient, Mockito.times(2)).getOwner(1);
+    }
+
+    @Test
+    void getOwnersDetails_joinsVisitsOfAllOwnersInOneCall() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .visits(new ArrayList<>())
+            .build();
+        PetDetails dog = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(30)
+            .name("Odie")
+            .visits(new ArrayList<>())
+            .build();
+        OwnerDetails jon = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .pets(List.of(cat))
+            .build();
+        OwnerDetails liz = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(2)
+            .pets(List.of(dog))
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwners(List.of(2, 1)))
+            .thenReturn(Mono.just(List.of(jon, liz)));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(20, 30)))
+            .thenReturn(Mono.just(new Visits(List.of(
+                new VisitDetails(300, dog.id(), null, "Dog visit"),
+                new VisitDetails(301, cat.id(), null, "Cat visit")))));
+
+        client.get()
+            .uri("/api/gateway/owners?ownerId=2,1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$[0].id").isEqualTo(2)
+            .jsonPath("$[0].pets[0].visits[0].description").isEqualTo("Dog visit")
+            .jsonPath("$[1].id").isEqualTo(1)
+            .jsonPath("$[1].pets[0].visits[0].description").isEqualTo("Cat visit");
+    }
+
+    @Test
+    void getOwnersDetails_readsOnlyUncachedOwners() {
+        PetDetails cat = PetDetails.PetDetailsBuilder.aPetDetails()
+            .id(20)
+            .name("Garfield")
+            .build();
+        OwnerDetails jon = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(1)
+            .pets(List.of(cat))
+            .build();
+        OwnerDetails liz = OwnerDetails.OwnerDetailsBuilder.anOwnerDetails()
+            .id(2)
+            .pets(List.of())
+            .build();
+        Mockito
+            .when(customersServiceClient.getOwner(1))
+            .thenReturn(Mono.just(jon));
+        Mockito
+            .when(customersServiceClient.getOwners(List.of(2)))
+            .thenReturn(Mono.just(List.of(liz)));
+        Mockito
+            .when(visitsServiceClient.getVisitsForPets(List.of(cat.id())))
+            .thenReturn(Mono.just(new Visits(List.of())));
+
+        client.get().uri("/api/gateway/owners/1").exchange().expectStatus().isOk();
+        client.get()
+            .uri("/api/gateway/owners?ownerId=2,1")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath("$[0].id").isEqualTo(2)
+            .jsonPath("$[1].id").isEqualTo(1);
+        client.get().uri("/api/gateway/owners?ownerId=2,1").exchange().expectStatus().isOk();
+
+        Mockito.verify(customersServiceClient, Mockito.times(1)).getOwners(List.of(2));
+        Mockito.verify(customersServiceClient, Mockito.never()).getOwners(List.of(2, 1));
+    }
+
 }
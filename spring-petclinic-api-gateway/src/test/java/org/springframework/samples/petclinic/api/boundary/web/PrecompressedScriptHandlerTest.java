@@ -0,0 +1,31 @@
+package org.springframework.samples.petclinic.api.boundary.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrecompressedScriptHandlerTest {
+
+    @Test
+    void acceptsListedCodings() {
+        assertTrue(PrecompressedScriptHandler.accepts("gzip, deflate, br", "br"));
+        assertTrue(PrecompressedScriptHandler.accepts("gzip, deflate, br", "gzip"));
+        assertTrue(PrecompressedScriptHandler.accepts("GZip", "gzip"));
+    }
+
+    @Test
+    void acceptsCodingsWithANonZeroQuality() {
+        assertTrue(PrecompressedScriptHandler.accepts("br;q=0.5, gzip;q=1.0", "br"));
+        assertTrue(PrecompressedScriptHandler.accepts("gzip; q=0.001", "gzip"));
+    }
+
+    @Test
+    void refusesCodingsRuledOutOrMissing() {
+        assertFalse(PrecompressedScriptHandler.accepts("br;q=0, gzip", "br"));
+        assertFalse(PrecompressedScriptHandler.accepts("gzip; q=0.0", "gzip"));
+        assertFalse(PrecompressedScriptHandler.accepts("gzip, deflate", "br"));
+        assertFalse(PrecompressedScriptHandler.accepts("", "gzip"));
+        assertFalse(PrecompressedScriptHandler.accepts("x-gzip", "gzip"));
+    }
+}
@@ -0,0 +1,48 @@
+package org.springframework.samples.petclinic.api.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+
+    private static final long SLOW = Duration.ofMillis(100).toNanos();
+
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+        new ConcurrencyLimitProperties(true, 4, 2, 10, 0.5, 2.0, 0.05, Duration.ofSeconds(1)));
+
+    @Test
+    void refusesRequestsBeyondTheLimit() {
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, limit.tryAcquire());
+        }
+        assertEquals(-1, limit.tryAcquire());
+        assertEquals(4, limit.getInFlight());
+    }
+
+    @Test
+    void growsWhileLatencyIsStable() {
+        int inFlight = limit.tryAcquire();
+        limit.tryAcquire();
+        limit.release(inFlight, FAST, false);
+        limit.release(2, FAST, false);
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void shrinksOnLatencyIncreaseDownToTheMinimum() {
+        limit.release(limit.tryAcquire(), FAST, false);
+        limit.release(limit.tryAcquire(), SLOW, false);
+        assertEquals(2, limit.getLimit());
+
+        limit.release(limit.tryAcquire(), SLOW * 10, true);
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.tryAcquire() > 0);
+    }
+}
@@ -0,0 +1,27 @@
+package org.springframework.samples.petclinic.api.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DefaultValuesTest {
+
+    @Test
+    void servicesWithoutSettingsGetTheDeclaredDefaults() {
+        HttpClientPoolProperties.Pool pool = new HttpClientPoolProperties(Map.of(), List.of()).pool("visits-service");
+        assertEquals(100, pool.maxConnections());
+        assertEquals(Duration.ofMinutes(5), pool.maxLifeTime());
+
+        assertFalse(new HedgingProperties(Map.of()).policy("visits-service").enabled());
+        assertEquals(LoadBalancingProperties.Strategy.LATENCY_AWARE,
+            new LoadBalancingProperties(Map.of()).policy("visits-service").strategy());
+        assertEquals(BulkheadProperties.Priority.INTERACTIVE,
+            new BulkheadProperties(true, 100, Map.of()).route("customers-service").priority());
+        assertEquals(Duration.ofSeconds(10), new TimeoutProperties(Map.of()).maxCeiling());
+    }
+}
@@ -0,0 +1,181 @@
+package org.springframework.samples.petclinic.api.system;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerProperties;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactiveLoadBalancer;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs four stub instances of a service, one of them slow and one answering 500, behind a load-balanced
+ * {@link WebClient}, and checks that both end up with far less than the quarter of the requests round robin
+ * would send them.
+ */
+class LatencyAwareLoadBalancerTest {
+
+    private static final int REQUESTS = 300;
+
+    private WebClient webClient;
+
+    private MockWebServer fast1;
+
+    private MockWebServer fast2;
+
+    private MockWebServer slow;
+
+    private MockWebServer failing;
+
+    private LatencyAwareLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fast1 = stubInstance(5);
+        fast2 = stubInstance(5);
+        slow = stubInstance(200);
+        failing = stubInstance(5);
+        failing.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(500);
+            }
+        });
+        List<ServiceInstance> instances = List.of(instance(fast1), instance(fast2), instance(slow), instance(failing));
+        ServiceInstanceListSupplier supplier = new ServiceInstanceListSupplier() {
+            @Override
+            public String getServiceId() {
+                return "visits-service";
+            }
+
+            @Override
+            public Flux<List<ServiceInstance>> get() {
+                return Flux.just(instances);
+            }
+        };
+        loadBalancer = new LatencyAwareLoadBalancer(
+            new StaticListableBeanFactory(Map.of("supplier", supplier)).getBeanProvider(ServiceInstanceListSupplier.class),
+            new LoadBalancingProperties(Map.of()).policy("visits-service"));
+        webClient = WebClient.builder()
+            .filter(new ReactorLoadBalancerExchangeFilterFunction(loadBalancerFactory(), List.of()))
+            .build();
+    }
+
+    /**
+     * What {@code @LoadBalanced} resolves for the service: the balancer under test, which is also its only
+     * lifecycle listener.
+     */
+    private ReactiveLoadBalancer.Factory<ServiceInstance> loadBalancerFactory() {
+        return new ReactiveLoadBalancer.Factory<>() {
+            @Override
+            public ReactiveLoadBalancer<ServiceInstance> getInstance(String serviceId) {
+                return loadBalancer;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <X> Map<String, X> getInstances(String name, Class<X> type) {
+                return type.isInstance(loadBalancer) ? Map.of("loadBalancer", (X) loadBalancer) : Map.of();
+            }
+
+            @Override
+            public <X> X getInstance(String name, Class<?> clazz, Class<?>... generics) {
+                return null;
+            }
+
+            @Override
+            public LoadBalancerProperties getProperties(String serviceId) {
+                return new LoadBalancerProperties();
+            }
+        };
+    }
+
+    @AfterEach
+    void shutdown() throws IOException {
+        fast1.shutdown();
+        fast2.shutdown();
+        slow.shutdown();
+        failing.shutdown();
+    }
+
+    @Test
+    void trafficMovesAwayFromSlowAndFailingInstances() {
+        Flux.range(0, REQUESTS)
+            .flatMap(i -> call(), 8)
+            .blockLast();
+
+        int slowRequests = slow.getRequestCount();
+        assertTrue(slowRequests < REQUESTS / 10,
+            "slow instance got " + slowRequests + " of " + REQUESTS + " requests");
+        int failingRequests = failing.getRequestCount();
+        assertTrue(failingRequests < REQUESTS / 10,
+            "failing instance got " + failingRequests + " of " + REQUESTS + " requests");
+        assertTrue(fast1.getRequestCount() + fast2.getRequestCount() > REQUESTS * 8 / 10);
+    }
+
+    @Test
+    void excludedInstanceIsNotPickedAgain() {
+        ServiceInstance excluded = instance(fast1);
+        RequestData requestData = new RequestData(HttpMethod.GET, URI.create("http://visits-service/pets/visits"),
+            new HttpHeaders(), new LinkedMultiValueMap<>(), Map.of(LatencyAwareLoadBalancer.EXCLUDED_INSTANCE_ATTR, excluded));
+        Request<RequestDataContext> request = new DefaultRequest<>(new RequestDataContext(requestData));
+
+        for (int i = 0; i < 50; i++) {
+            ServiceInstance chosen = loadBalancer.choose(request).block().getServer();
+            assertNotEquals(excluded.getPort(), chosen.getPort());
+        }
+    }
+
+    private Mono<Void> call() {
+        return webClient.get()
+            .uri("http://visits-service/pets/visits")
+            .retrieve()
+            .toBodilessEntity()
+            .onErrorResume(WebClientResponseException.class, e -> Mono.empty())
+            .then();
+    }
+
+    private static MockWebServer stubInstance(long latencyMillis) throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody("[]").setHeadersDelay(latencyMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static ServiceInstance instance(MockWebServer server) {
+        return new DefaultServiceInstance(server.getHostName() + ":" + server.getPort(), "visits-service",
+            server.getHostName(), server.getPort(), false);
+    }
+}
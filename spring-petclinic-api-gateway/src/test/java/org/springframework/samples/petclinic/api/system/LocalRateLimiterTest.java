@@ -0,0 +1,40 @@
+package org.springframework.samples.petclinic.api.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalRateLimiterTest {
+
+    private final LocalRateLimiter.Config config = new LocalRateLimiter.Config()
+        .setReplenishRate(10)
+        .setBurstCapacity(3);
+
+    private final AtomicLong bucket = new AtomicLong(Long.MIN_VALUE);
+
+    @Test
+    void admitsBurstThenRefuses() {
+        long now = 0;
+
+        assertEquals(2, LocalRateLimiter.tryAcquire(bucket, config, now));
+        assertEquals(1, LocalRateLimiter.tryAcquire(bucket, config, now));
+        assertEquals(0, LocalRateLimiter.tryAcquire(bucket, config, now));
+        assertEquals(-1, LocalRateLimiter.tryAcquire(bucket, config, now));
+    }
+
+    @Test
+    void replenishesAtConfiguredRate() {
+        long now = TimeUnit.SECONDS.toNanos(-5);
+        for (int i = 0; i < 3; i++) {
+            LocalRateLimiter.tryAcquire(bucket, config, now);
+        }
+        assertEquals(-1, LocalRateLimiter.tryAcquire(bucket, config, now));
+
+        long oneTokenLater = now + TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(0, LocalRateLimiter.tryAcquire(bucket, config, oneTokenLater));
+        assertEquals(-1, LocalRateLimiter.tryAcquire(bucket, config, oneTokenLater));
+    }
+}
@@ -0,0 +1,53 @@
+package org.springframework.samples.petclinic.api.system;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.api.system.BulkheadProperties.Priority;
+import org.springframework.samples.petclinic.api.system.PriorityBulkheads.BulkheadFullException;
+import org.springframework.samples.petclinic.api.system.PriorityBulkheads.Permit;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityBulkheadsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PriorityBulkheads bulkheads = new PriorityBulkheads(new BulkheadProperties(true, 2, Map.of(
+        "customers-service", new BulkheadProperties.Route(2, 5, Duration.ofSeconds(5), Priority.INTERACTIVE),
+        "genai-service", new BulkheadProperties.Route(2, 1, Duration.ofSeconds(5), Priority.BULK))), meterRegistry);
+
+    @Test
+    void interactiveRequestsAreAdmittedBeforeBulkOnes() {
+        Permit first = bulkheads.acquire("genai-service").block();
+        Permit second = bulkheads.acquire("customers-service").block();
+
+        CompletableFuture<Permit> bulk = bulkheads.acquire("genai-service").toFuture();
+        CompletableFuture<Permit> interactive = bulkheads.acquire("customers-service").toFuture();
+        assertFalse(bulk.isDone());
+        assertFalse(interactive.isDone());
+
+        first.release();
+        assertTrue(interactive.isDone());
+        assertFalse(bulk.isDone());
+
+        second.release();
+        assertTrue(bulk.isDone());
+    }
+
+    @Test
+    void refusesRequestsBeyondTheQueue() {
+        bulkheads.acquire("genai-service").block();
+        bulkheads.acquire("genai-service").block();
+        bulkheads.acquire("genai-service").toFuture();
+
+        assertThrows(BulkheadFullException.class, () -> bulkheads.acquire("genai-service").block());
+        assertEquals(1.0, meterRegistry.get("gateway.bulkhead.queue.depth").tag("route", "genai-service").gauge().value());
+    }
+}
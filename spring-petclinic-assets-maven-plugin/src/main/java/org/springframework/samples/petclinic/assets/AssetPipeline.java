@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.assets;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.javascript.jscomp.BasicErrorManager;
+import com.google.javascript.jscomp.CheckLevel;
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build-time asset stage of the UI, run by {@link BundleAssetsMojo} on {@code target/classes/static} during
+ * {@code prepare-package}.
+ * <p>
+ * The scripts referenced by {@code index.html} are concatenated in page order together with the component
+ * templates (preloaded into {@code $templateCache}), minified with the Closure Compiler, and written as
+ * {@code scripts/app.<hash>.min.js} next to {@code .gz} and {@code .br} variants. {@code index.html} is rewritten
+ * to load that single bundle. The sources are left in place, so the unbundled page still works from the IDE.
+ */
+public final class AssetPipeline {
+
+    /**
+     * A script tag loading one of the UI sources, but not the bundle written by a previous build.
+     */
+    private static final Pattern LOCAL_SCRIPT = Pattern.compile(
+        "[ \\t]*<script src=\"/(?!scripts/app\\.[0-9a-f]{12}\\.min\\.js\")(scripts/[^\"]+\\.js)\"></script>\\R?");
+
+    private static final String BUNDLE_PREFIX = "scripts/app.";
+
+    private final Path staticDir;
+
+    private final Log log;
+
+    AssetPipeline(Path staticDir, Log log) {
+        this.staticDir = staticDir;
+        this.log = log;
+    }
+
+    /**
+     * @return the path of the bundle relative to the static directory, or {@code null} when {@code index.html}
+     * was already rewritten by a previous build
+     */
+    String run() throws IOException {
+        Path indexHtml = staticDir.resolve("index.html");
+        String html = Files.readString(indexHtml);
+        List<String> scripts = new ArrayList<>();
+        Matcher matcher = LOCAL_SCRIPT.matcher(html);
+        while (matcher.find()) {
+            scripts.add(matcher.group(1));
+        }
+        if (scripts.isEmpty()) {
+            return null;
+        }
+
+        byte[] bundle = minify(scripts).getBytes(StandardCharsets.UTF_8);
+        String bundleName = BUNDLE_PREFIX + sha256(bundle).substring(0, 12) + ".min.js";
+        Path bundleFile = staticDir.resolve(bundleName);
+        Files.write(bundleFile, bundle);
+        Files.write(Path.of(bundleFile + ".gz"), gzip(bundle));
+        Files.write(Path.of(bundleFile + ".br"), brotli(bundle));
+
+        Files.writeString(indexHtml, rewrite(html, bundleName));
+        return bundleName;
+    }
+
+    private String minify(List<String> scripts) throws IOException {
+        List<SourceFile> inputs = new ArrayList<>();
+        for (String script : scripts) {
+            inputs.add(SourceFile.fromCode(script, Files.readString(staticDir.resolve(script))));
+        }
+        inputs.add(SourceFile.fromCode("scripts/templates.js", templateCache()));
+
+        CompilerOptions options = new CompilerOptions();
+        CompilationLevel.SIMPLE_OPTIMIZATIONS.setOptionsForCompilationLevel(options);
+        options.setLanguageIn(LanguageMode.ECMASCRIPT_NEXT);
+        options.setLanguageOut(LanguageMode.ECMASCRIPT_2015);
+        options.setEmitUseStrict(false);
+        Compiler compiler = new Compiler();
+        compiler.setErrorManager(new LoggingErrorManager(log));
+        Result result = compiler.compile(List.of(), inputs, options);
+        if (!result.success) {
+            throw new IllegalStateException("Closure Compiler failed: " + result.errors);
+        }
+        return compiler.toSource();
+    }
+
+    /**
+     * Components load their templates by URL ({@code templateUrl: 'scripts/...'}); serving them from the bundle
+     * saves one request per view.
+     */
+    private String templateCache() throws IOException {
+        ObjectMapper json = new ObjectMapper();
+        StringBuilder js = new StringBuilder("angular.module('petClinicApp').run(['$templateCache', function ($templateCache) {\n");
+        try (Stream<Path> files = Files.walk(staticDir.resolve("scripts"))) {
+            for (Path template : files.filter(file -> file.toString().endsWith(".html")).sorted().toList()) {
+                String url = staticDir.relativize(template).toString().replace('\\', '/');
+                js.append("    $templateCache.put(").append(json.writeValueAsString(url)).append(", ")
+                    .append(json.writeValueAsString(Files.readString(template))).append(");\n");
+            }
+        }
+        return js.append("}]);\n").toString();
+    }
+
+    /**
+     * Replaces the first local script tag with the bundle and drops the others.
+     */
+    static String rewrite(String html, String bundleName) {
+        Matcher matcher = LOCAL_SCRIPT.matcher(html);
+        StringBuilder rewritten = new StringBuilder();
+        boolean first = true;
+        while (matcher.find()) {
+            String replacement = first ? "    <script src=\"/" + bundleName + "\"></script>\n" : "";
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+            first = false;
+        }
+        matcher.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    /**
+     * Reports the Closure Compiler warnings and errors through the build log.
+     */
+    private static class LoggingErrorManager extends BasicErrorManager {
+
+        private final Log log;
+
+        LoggingErrorManager(Log log) {
+            this.log = log;
+        }
+
+        @Override
+        public void println(CheckLevel level, JSError error) {
+            if (level == CheckLevel.ERROR) {
+                log.error(error.toString());
+            } else {
+                log.warn(error.toString());
+            }
+        }
+
+        @Override
+        protected void printSummary() {
+            if (getErrorCount() + getWarningCount() > 0) {
+                log.info("Closure Compiler: " + getErrorCount() + " error(s), " + getWarningCount() + " warning(s)");
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] brotli(byte[] content) throws IOException {
+        Brotli4jLoader.ensureAvailability();
+        return Encoder.compress(content, new Encoder.Parameters().setQuality(11));
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.assets;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the {@link AssetPipeline} on the static resources of the module once they are copied to the output
+ * directory.
+ * <p>
+ * Usage: bind the {@code bundle} goal of this plugin in the module packaging the UI; {@code -Dassets.skip}
+ * packages the individual scripts instead.
+ */
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true)
+public class BundleAssetsMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}/static", required = true)
+    private File staticDirectory;
+
+    @Parameter(property = "assets.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping the UI asset bundle");
+            return;
+        }
+        try {
+            String bundle = new AssetPipeline(staticDirectory.toPath(), getLog()).run();
+            if (bundle == null) {
+                getLog().info("index.html already references a bundle, nothing to do");
+            } else {
+                getLog().info("Wrote " + staticDirectory.toPath().resolve(bundle));
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new MojoExecutionException("Could not bundle the UI scripts of " + staticDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.springframework.samples.petclinic.assets;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetPipelineTest {
+
+    private static final String INDEX_HTML = """
+        <html>
+        <head>
+            <script src="/webjars/angular/angular.min.js"></script>
+            <script src="/scripts/app.js"></script>
+            <script src="/scripts/owner-list/owner-list.component.js"></script>
+        </head>
+        </html>
+        """;
+
+    @TempDir
+    Path staticDir;
+
+    @Test
+    void rewriteReplacesTheLocalScriptsWithTheBundle() {
+        String rewritten = AssetPipeline.rewrite(INDEX_HTML, "scripts/app.0123456789ab.min.js");
+
+        assertEquals("""
+            <html>
+            <head>
+                <script src="/webjars/angular/angular.min.js"></script>
+                <script src="/scripts/app.0123456789ab.min.js"></script>
+            </head>
+            </html>
+            """, rewritten);
+    }
+
+    @Test
+    void rewriteLeavesAPageWithoutLocalScriptsAlone() {
+        String html = "<html><script src=\"/webjars/angular/angular.min.js\"></script></html>";
+
+        assertEquals(html, AssetPipeline.rewrite(html, "scripts/app.0123456789ab.min.js"));
+    }
+
+    @Test
+    void rewriteLeavesTheBundleOfAPreviousBuildAlone() {
+        String html = AssetPipeline.rewrite(INDEX_HTML, "scripts/app.0123456789ab.min.js");
+
+        assertEquals(html, AssetPipeline.rewrite(html, "scripts/app.ba9876543210.min.js"));
+    }
+
+    @Test
+    void bundlesScriptsAndTemplatesOnce() throws IOException {
+        Files.createDirectories(staticDir.resolve("scripts/owner-list"));
+        Files.writeString(staticDir.resolve("index.html"), INDEX_HTML);
+        Files.writeString(staticDir.resolve("scripts/app.js"), "var petClinicApp = angular.module('petClinicApp', []);\n");
+        Files.writeString(staticDir.resolve("scripts/owner-list/owner-list.component.js"),
+            "angular.module('petClinicApp').component('ownerList', {templateUrl: 'scripts/owner-list/owner-list.template.html'});\n");
+        Files.writeString(staticDir.resolve("scripts/owner-list/owner-list.template.html"), "<h2>Owners</h2>");
+        AssetPipeline pipeline = new AssetPipeline(staticDir, new SystemStreamLog());
+
+        String bundle = pipeline.run();
+
+        assertTrue(bundle.matches("scripts/app\\.[0-9a-f]{12}\\.min\\.js"), bundle);
+        String script = Files.readString(staticDir.resolve(bundle));
+        assertTrue(script.contains("ownerList"));
+        assertTrue(script.contains("\"scripts/owner-list/owner-list.template.html\""));
+        assertTrue(script.contains("Owners"));
+        assertTrue(Files.size(staticDir.resolve(bundle + ".gz")) > 0);
+        assertTrue(Files.size(staticDir.resolve(bundle + ".br")) > 0);
+        String index = Files.readString(staticDir.resolve("index.html"));
+        assertTrue(index.contains("<script src=\"/" + bundle + "\"></script>"));
+        assertFalse(index.contains("owner-list.component.js"));
+
+        assertNull(pipeline.run());
+    }
+}
@@ -15,18 +15,48 @@
  */
 package org.springframework.samples.petclinic.customers;
 
+import com.fasterxml.jackson.databind.Module;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.Pet;
+import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetTypeView;
+import org.springframework.samples.petclinic.customers.model.PetView;
+import org.springframework.samples.petclinic.web.BinaryJsonConfig;
+import org.springframework.samples.petclinic.web.SparseFieldsets;
 
 /**
  * @author Maciej Szarlinski
  */
 @EnableDiscoveryClient
 @SpringBootApplication
+@Import(BinaryJsonConfig.class)
 public class CustomersServiceApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(CustomersServiceApplication.class, args);
 	}
+
+	/**
+	 * Opts the entities and their read-only views in to {@code fields} selection.
+	 */
+	@Bean
+	Module sparseFieldsetsModule() {
+		return SparseFieldsets.module(Owner.class, Pet.class, PetType.class,
+			OwnerView.class, PetView.class, PetTypeView.class);
+	}
+
+	/**
+	 * Lets the entities opted in to {@code fields} selection be written in full when no selection is made.
+	 */
+	@Bean
+	Jackson2ObjectMapperBuilderCustomizer sparseFieldsetsCustomizer() {
+		return builder -> builder.filters(SparseFieldsets.serializeAll());
+	}
 }
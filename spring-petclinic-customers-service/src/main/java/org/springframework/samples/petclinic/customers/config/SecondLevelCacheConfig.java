@@ -0,0 +1,116 @@
+package org.springframework.samples.petclinic.customers.config;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Hibernate second-level and query cache, held in process by Caffeine behind JCache. The regions are named by the
+ * cached entities, collections and queries ({@code pet-types}, {@code pet-type-queries}, {@code owners},
+ * {@code owner-pets}, {@code pets}) and sized from {@code customers.hibernate-cache.regions}, which the config server
+ * can override. Each application context gets a cache manager of its own, the provider's default one being shared by
+ * the whole JVM.
+ * <p>
+ * A {@code /actuator/refresh} applies new sizes and expiries to the running regions, as long as the region was
+ * created with a limit of that kind. Hit, miss and put counts are exported to Micrometer by Spring Boot as
+ * {@code hibernate.second.level.cache.*} and {@code hibernate.query.cache.*}.
+ */
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheConfig.HibernateCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+  @Bean(destroyMethod = "close")
+  CacheManager hibernateCacheManager(HibernateCacheProperties properties) {
+    CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    CacheManager cacheManager = provider.getCacheManager(
+      URI.create("hibernate-cache:" + UUID.randomUUID()), getClass().getClassLoader());
+    properties.regions().forEach((name, region) -> cacheManager.createCache(name, region.configuration()));
+    return cacheManager;
+  }
+
+  @Bean
+  HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+    return hibernateProperties -> {
+      hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+      hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+      hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+      hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+      // the query results and update timestamps regions are left unbounded
+      hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create");
+      hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+    };
+  }
+
+  @Bean
+  ApplicationListener<EnvironmentChangeEvent> hibernateCacheRefresher(CacheManager hibernateCacheManager,
+                                                                      Environment environment) {
+    return event -> {
+      if (event.getKeys().stream().noneMatch(key -> key.startsWith(HibernateCacheProperties.PREFIX))) {
+        return;
+      }
+      Binder.get(environment).bind(HibernateCacheProperties.PREFIX, HibernateCacheProperties.class)
+        .ifBound(properties -> properties.regions().forEach((name, region) -> {
+          javax.cache.Cache<?, ?> cache = hibernateCacheManager.getCache(name);
+          if (cache != null) {
+            region.applyTo(cache.unwrap(Cache.class));
+          }
+        }));
+    };
+  }
+
+  /**
+   * Eviction policy of each Hibernate cache region, by region name.
+   */
+  @ConfigurationProperties(prefix = HibernateCacheProperties.PREFIX)
+  public record HibernateCacheProperties(@DefaultValue Map<String, Region> regions) {
+
+    static final String PREFIX = "customers.hibernate-cache";
+
+    /**
+     * @param maximumSize       entries kept before the least recently used ones are evicted, unbounded if unset
+     * @param expireAfterWrite  time an entry is kept after it was cached, forever if unset
+     */
+    public record Region(Long maximumSize, Duration expireAfterWrite) {
+
+      CaffeineConfiguration<Object, Object> configuration() {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize == null ? OptionalLong.empty() : OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(expireAfterWrite == null
+          ? OptionalLong.empty() : OptionalLong.of(expireAfterWrite.toNanos()));
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+      }
+
+      void applyTo(Cache<?, ?> cache) {
+        if (maximumSize != null) {
+          cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maximumSize));
+        }
+        if (expireAfterWrite != null) {
+          cache.policy().expireAfterWrite().ifPresent(expiration -> expiration.setExpiresAfter(expireAfterWrite));
+        }
+      }
+    }
+  }
+
+}
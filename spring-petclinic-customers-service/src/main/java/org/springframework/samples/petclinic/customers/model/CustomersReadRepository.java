@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Read side of customers-service: owners and pets read with one SQL statement per lookup straight
+ * into immutable records, pets sorted in SQL. Unlike loading {@link Owner} entities, it neither issues a select
+ * per pet for the eager associations nor sorts the pets on every serialization.
+ * <p>
+ * Only the write paths and the cached pet types load entities, through {@link OwnerRepository} and
+ * {@link PetRepository}.
+ */
+@Repository
+public class CustomersReadRepository {
+
+    private static final String OWNERS_WITH_PETS = """
+        SELECT owners.id, owners.first_name, owners.last_name, owners.address, owners.city, owners.telephone,
+               pets.id AS pet_id, pets.name AS pet_name, pets.birth_date, types.id AS type_id, types.name AS type_name
+        FROM owners
+        LEFT JOIN pets ON pets.owner_id = owners.id
+        LEFT JOIN types ON types.id = pets.type_id
+        """;
+
+    private static final String ORDER_BY_OWNER_THEN_PET_NAME = " ORDER BY owners.id, LOWER(pets.name), pets.id";
+
+    private final JdbcClient jdbcClient;
+
+    public CustomersReadRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    public Optional<OwnerView> findOwner(int ownerId) {
+        return jdbcClient.sql(OWNERS_WITH_PETS + " WHERE owners.id = :ownerId" + ORDER_BY_OWNER_THEN_PET_NAME)
+            .param("ownerId", ownerId)
+            .query(new OwnersExtractor())
+            .stream()
+            .findFirst();
+    }
+
+    public List<OwnerView> findOwners() {
+        return jdbcClient.sql(OWNERS_WITH_PETS + ORDER_BY_OWNER_THEN_PET_NAME)
+            .query(new OwnersExtractor());
+    }
+
+    public List<OwnerView> findOwners(Collection<Integer> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcClient.sql(OWNERS_WITH_PETS + " WHERE owners.id IN (:ownerIds)" + ORDER_BY_OWNER_THEN_PET_NAME)
+            .param("ownerIds", ownerIds)
+            .query(new OwnersExtractor());
+    }
+
+    public Optional<OwnedPet> findPet(int petId) {
+        return jdbcClient.sql("""
+                SELECT pets.id AS pet_id, pets.name AS pet_name, pets.birth_date, types.id AS type_id,
+                       types.name AS type_name, owners.first_name, owners.last_name
+                FROM pets
+                JOIN owners ON owners.id = pets.owner_id
+                LEFT JOIN types ON types.id = pets.type_id
+                WHERE pets.id = :petId""")
+            .param("petId", petId)
+            .query((rs, rowNum) -> new OwnedPet(pet(rs), rs.getString("first_name"), rs.getString("last_name")))
+            .optional();
+    }
+
+    private static PetView pet(ResultSet rs) throws SQLException {
+        int typeId = rs.getInt("type_id");
+        PetTypeView type = rs.wasNull() ? null : new PetTypeView(typeId, rs.getString("type_name"));
+        return new PetView(rs.getInt("pet_id"), rs.getString("pet_name"), rs.getDate("birth_date"), type);
+    }
+
+    /**
+     * A pet with the name of its owner.
+     */
+    public record OwnedPet(PetView pet, String ownerFirstName, String ownerLastName) {
+    }
+
+    /**
+     * Folds the rows of {@link #OWNERS_WITH_PETS}, one per pet or one per owner without pets, into owners,
+     * keeping the order of the statement.
+     */
+    private static class OwnersExtractor implements ResultSetExtractor<List<OwnerView>> {
+
+        @Override
+        public List<OwnerView> extractData(ResultSet rs) throws SQLException {
+            Map<Integer, OwnerView> owners = new LinkedHashMap<>();
+            while (rs.next()) {
+                int ownerId = rs.getInt("id");
+                OwnerView owner = owners.get(ownerId);
+                if (owner == null) {
+                    owner = new OwnerView(ownerId, rs.getString("first_name"), rs.getString("last_name"),
+                        rs.getString("address"), rs.getString("city"), rs.getString("telephone"), new ArrayList<>());
+                    owners.put(ownerId, owner);
+                }
+                rs.getInt("pet_id");
+                if (!rs.wasNull()) {
+                    owner.pets().add(pet(rs));
+                }
+            }
+            return owners.values().stream()
+                .map(owner -> new OwnerView(owner.id(), owner.firstName(), owner.lastName(), owner.address(),
+                    owner.city(), owner.telephone(), List.copyOf(owner.pets())))
+                .toList();
+        }
+    }
+}
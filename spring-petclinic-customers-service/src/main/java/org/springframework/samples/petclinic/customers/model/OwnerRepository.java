@@ -15,7 +15,13 @@
  */
 package org.springframework.samples.petclinic.customers.model;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant with Spring Data naming
@@ -27,4 +33,43 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * @author Michael Isvy
  * @author Maciej Szarlinski
  */
-public interface OwnerRepository extends JpaRepository<Owner, Integer> { }
+public interface OwnerRepository extends JpaRepository<Owner, Integer> {
+
+    /**
+     * First page of the owners whose last name matches the pattern, ordered by last name then id, which the
+     * {@code last_name} index serves directly.
+     *
+     * @param lastNamePattern {@code LIKE} pattern, {@code !} being the escape character
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.customers.model.OwnerSummary(
+            owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone)
+        FROM Owner owner
+        WHERE owner.lastName LIKE :lastNamePattern ESCAPE '!'
+        ORDER BY owner.lastName, owner.id""")
+    List<OwnerSummary> findSummaries(@Param("lastNamePattern") String lastNamePattern, Limit limit);
+
+    /**
+     * Next page of {@link #findSummaries}: the owners coming after the given last name and id, found by seeking
+     * the index rather than by skipping an offset.
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.customers.model.OwnerSummary(
+            owner.id, owner.firstName, owner.lastName, owner.address, owner.city, owner.telephone)
+        FROM Owner owner
+        WHERE owner.lastName LIKE :lastNamePattern ESCAPE '!'
+            AND (owner.lastName > :lastName OR (owner.lastName = :lastName AND owner.id > :id))
+        ORDER BY owner.lastName, owner.id""")
+    List<OwnerSummary> findSummariesAfter(@Param("lastNamePattern") String lastNamePattern,
+                                          @Param("lastName") String lastName, @Param("id") int id, Limit limit);
+
+    /**
+     * Pets of the given owners, sorted by name ignoring case like the pets of {@link CustomersReadRepository}.
+     */
+    @Query("""
+        SELECT new org.springframework.samples.petclinic.customers.model.PetSummary(pet.owner.id, pet.id, pet.name)
+        FROM Pet pet
+        WHERE pet.owner.id IN :ownerIds
+        ORDER BY LOWER(pet.name), pet.id""")
+    List<PetSummary> findPetSummaries(@Param("ownerIds") Collection<Integer> ownerIds);
+}
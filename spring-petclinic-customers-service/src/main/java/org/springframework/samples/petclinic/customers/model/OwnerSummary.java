@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.model;
+
+import java.util.List;
+
+/**
+ * Row of the owner list: the columns of an {@link Owner} and the names of their pets, read without loading the
+ * entities.
+ */
+public record OwnerSummary(
+    Integer id,
+    String firstName,
+    String lastName,
+    String address,
+    String city,
+    String telephone,
+    List<PetSummary> pets
+) {
+
+    public OwnerSummary(Integer id, String firstName, String lastName, String address, String city, String telephone) {
+        this(id, firstName, lastName, address, city, telephone, List.of());
+    }
+
+    public OwnerSummary withPets(List<PetSummary> pets) {
+        return new OwnerSummary(id, firstName, lastName, address, city, telephone, pets);
+    }
+}
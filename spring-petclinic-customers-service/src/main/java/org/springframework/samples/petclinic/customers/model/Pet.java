@@ -17,6 +17,8 @@ package org.springframework.samples.petclinic.customers.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.core.style.ToStringCreator;
 
 import java.util.Date;
@@ -33,7 +35,12 @@ import java.util.Objects;
  */
 @Entity
 @Table(name = "pets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Pet.CACHE_REGION)
 public class Pet {
+
+    public static final String CACHE_REGION = "pets";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -18,8 +18,11 @@ package org.springframework.samples.petclinic.customers.model;
 import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 /**
@@ -35,13 +38,21 @@ import org.springframework.data.repository.query.Param;
 public interface PetRepository extends JpaRepository<Pet, Integer> {
 
     /**
-     * Retrieve all {@link PetType}s from the data store.
+     * Retrieve all {@link PetType}s from the data store, or from the query cache since they are reference data.
      * @return a Collection of {@link PetType}s.
      */
     @Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = PetType.QUERY_CACHE_REGION)
+    })
     List<PetType> findPetTypes();
 
     @Query("FROM PetType ptype WHERE ptype.id = :typeId")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = PetType.QUERY_CACHE_REGION)
+    })
     Optional<PetType> findPetTypeById(@Param("typeId") int typeId);
 
     
@@ -16,6 +16,8 @@
 package org.springframework.samples.petclinic.customers.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * @author Juergen Hoeller
@@ -24,8 +26,14 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "types")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = PetType.CACHE_REGION)
 public class PetType {
 
+    public static final String CACHE_REGION = "pet-types";
+
+    public static final String QUERY_CACHE_REGION = "pet-type-queries";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -17,18 +17,29 @@ package org.springframework.samples.petclinic.customers.web;
 
 import io.micrometer.core.annotation.Timed;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.samples.petclinic.customers.web.mapper.OwnerEntityMapper;
+import org.springframework.samples.petclinic.customers.model.CustomersReadRepository;
 import org.springframework.samples.petclinic.customers.model.Owner;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerSummary;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.PetSummary;
+import org.springframework.samples.petclinic.web.SparseFieldsets;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static java.util.stream.Collectors.groupingBy;
+
 /**
  * @author Juergen Hoeller
  * @author Ken Krebs
@@ -44,10 +55,13 @@ class OwnerResource {
     private static final Logger log = LoggerFactory.getLogger(OwnerResource.class);
 
     private final OwnerRepository ownerRepository;
+    private final CustomersReadRepository readRepository;
     private final OwnerEntityMapper ownerEntityMapper;
 
-    OwnerResource(OwnerRepository ownerRepository, OwnerEntityMapper ownerEntityMapper) {
+    OwnerResource(OwnerRepository ownerRepository, CustomersReadRepository readRepository,
+                  OwnerEntityMapper ownerEntityMapper) {
         this.ownerRepository = ownerRepository;
+        this.readRepository = readRepository;
         this.ownerEntityMapper = ownerEntityMapper;
     }
 
@@ -65,16 +79,56 @@ class OwnerResource {
      * Read single Owner
      */
     @GetMapping(value = "/{ownerId}")
-    public Optional<Owner> findOwner(@PathVariable("ownerId") @Min(1) int ownerId) {
-        return ownerRepository.findById(ownerId);
+    public Optional<OwnerView> findOwner(@PathVariable("ownerId") @Min(1) int ownerId) {
+        return readRepository.findOwner(ownerId);
     }
 
     /**
      * Read List of Owners
+     *
+     * @param fields properties to return, see {@link SparseFieldsets}
      */
     @GetMapping
-    public List<Owner> findAll() {
-        return ownerRepository.findAll();
+    public MappingJacksonValue findAll(@RequestParam(value = "fields", required = false) String fields) {
+        return SparseFieldsets.select(readRepository.findOwners(), fields);
+    }
+
+    /**
+     * Read a page of the Owner list, ordered by last name
+     *
+     * @param size     number of owners per page
+     * @param lastName beginning of the last name of the owners to list, all of them when absent
+     * @param after    {@code next} cursor of the previous page, none for the first page
+     */
+    @GetMapping(params = "size")
+    public OwnerSummaryPage findPage(
+        @RequestParam("size") @Min(1) @Max(100) int size,
+        @RequestParam(value = "lastName", required = false) String lastName,
+        @RequestParam(value = "after", required = false) String after) {
+
+        String lastNamePattern = likePrefix(lastName);
+        Limit limit = Limit.of(size + 1);
+        List<OwnerSummary> owners;
+        if (after == null) {
+            owners = ownerRepository.findSummaries(lastNamePattern, limit);
+        } else {
+            OwnerSummaryPage.Cursor cursor = OwnerSummaryPage.Cursor.decode(after);
+            owners = ownerRepository.findSummariesAfter(lastNamePattern, cursor.lastName(), cursor.id(), limit);
+        }
+        boolean hasNext = owners.size() > size;
+        if (hasNext) {
+            owners = owners.subList(0, size);
+        }
+        return new OwnerSummaryPage(withPets(owners),
+            hasNext ? OwnerSummaryPage.Cursor.of(owners.get(size - 1)).encode() : null);
+    }
+
+    /**
+     * Read a batch of Owners in a single query
+     */
+    @GetMapping(params = "ownerId")
+    public List<OwnerView> findOwners(@RequestParam("ownerId") List<Integer> ownerIds) {
+        return readRepository.findOwners(ownerIds);
     }
 
     /**
@@ -89,4 +143,24 @@ class OwnerResource {
         log.info("Saving owner {}", ownerModel);
         ownerRepository.save(ownerModel);
     }
+
+    private List<OwnerSummary> withPets(List<OwnerSummary> owners) {
+        if (owners.isEmpty()) {
+            return owners;
+        }
+        Map<Integer, List<PetSummary>> pets = ownerRepository.findPetSummaries(
+                owners.stream().map(OwnerSummary::id).toList())
+            .stream()
+            .collect(groupingBy(PetSummary::ownerId));
+        return owners.stream()
+            .map(owner -> owner.withPets(pets.getOrDefault(owner.id(), List.of())))
+            .toList();
+    }
+
+    private static String likePrefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return "%";
+        }
+        return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
 }
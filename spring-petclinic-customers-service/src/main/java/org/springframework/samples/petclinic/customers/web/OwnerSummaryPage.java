@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.customers.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.customers.model.OwnerSummary;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Page of the owner list.
+ *
+ * @param items owners of the page, ordered by last name then id
+ * @param next  cursor to pass as {@code after} for the next page, {@code null} on the last one
+ */
+public record OwnerSummaryPage(
+    List<OwnerSummary> items,
+    String next
+) {
+
+    /**
+     * Position in the owner list: the sort key of the last owner of a page, sent to the client as an opaque
+     * token.
+     */
+    record Cursor(String lastName, int id) {
+
+        static Cursor of(OwnerSummary owner) {
+            return new Cursor(owner.lastName(), owner.id());
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + lastName).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(':');
+                return new Cursor(decoded.substring(separator + 1), Integer.parseInt(decoded.substring(0, separator)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor " + token, e);
+            }
+        }
+    }
+}
@@ -16,8 +16,8 @@
 package org.springframework.samples.petclinic.customers.web;
 
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.samples.petclinic.customers.model.Pet;
-import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.CustomersReadRepository.OwnedPet;
+import org.springframework.samples.petclinic.customers.model.PetTypeView;
 
 import java.util.Date;
 
@@ -36,9 +36,9 @@ record PetDetails(
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     Date birthDate,
 
-    PetType type
+    PetTypeView type
 ) {
-    public PetDetails(Pet pet) {
-        this(pet.getId(), pet.getName(), pet.getOwner().getFirstName() + " " + pet.getOwner().getLastName(), pet.getBirthDate(), pet.getType());
+    public PetDetails(OwnedPet pet) {
+        this(pet.pet().id(), pet.pet().name(), pet.ownerFirstName() + " " + pet.ownerLastName(), pet.pet().birthDate(), pet.pet().type());
     }
 }
@@ -40,12 +40,17 @@ class PetResource {
 
     private final PetRepository petRepository;
     private final OwnerRepository ownerRepository;
+    private final CustomersReadRepository readRepository;
 
-    PetResource(PetRepository petRepository, OwnerRepository ownerRepository) {
+    PetResource(PetRepository petRepository, OwnerRepository ownerRepository, CustomersReadRepository readRepository) {
         this.petRepository = petRepository;
         this.ownerRepository = ownerRepository;
+        this.readRepository = readRepository;
     }
 
+    /**
+     * Served from the Hibernate query cache: pet types are read-only reference data.
+     */
     @GetMapping("/petTypes")
     public List<PetType> getPetTypes() {
         return petRepository.findPetTypes();
@@ -87,8 +92,9 @@ class PetResource {
 
     @GetMapping("owners/*/pets/{petId}")
     public PetDetails findPet(@PathVariable("petId") int petId) {
-        Pet pet = findPetById(petId);
-        return new PetDetails(pet);
+        return readRepository.findPet(petId)
+            .map(PetDetails::new)
+            .orElseThrow(() -> new ResourceNotFoundException("Pet " + petId + " not found"));
     }
 
 
@@ -0,0 +1,98 @@
+package org.springframework.samples.petclinic.customers.config;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import javax.cache.CacheManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.samples.petclinic.customers.config.SecondLevelCacheConfig.HibernateCacheProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecondLevelCacheConfigTest {
+
+  private final ApplicationContextRunner runner = new ApplicationContextRunner()
+    .withUserConfiguration(SecondLevelCacheConfig.class)
+    .withPropertyValues(
+      "customers.hibernate-cache.regions.owners.maximum-size=100",
+      "customers.hibernate-cache.regions.owners.expire-after-write=10m",
+      "customers.hibernate-cache.regions.pet-types.maximum-size=10");
+
+  @Test
+  void bindsTheRegions() {
+    runner.run(context -> {
+      HibernateCacheProperties properties = context.getBean(HibernateCacheProperties.class);
+
+      assertThat(properties.regions()).containsOnlyKeys("owners", "pet-types");
+      assertThat(properties.regions().get("owners"))
+        .isEqualTo(new HibernateCacheProperties.Region(100L, Duration.ofMinutes(10)));
+      assertThat(properties.regions().get("pet-types"))
+        .isEqualTo(new HibernateCacheProperties.Region(10L, null));
+    });
+  }
+
+  @Test
+  void createsTheRegionsWithTheirLimits() {
+    runner.run(context -> {
+      assertThat(maximumSize(context, "owners")).isEqualTo(100);
+      assertThat(expireAfterWrite(context, "owners")).hasValue(Duration.ofMinutes(10));
+      assertThat(maximumSize(context, "pet-types")).isEqualTo(10);
+      assertThat(expireAfterWrite(context, "pet-types")).isEmpty();
+    });
+  }
+
+  @Test
+  void resizesTheRegionsOnEnvironmentChange() {
+    runner.run(context -> {
+      TestPropertyValues.of(
+        "customers.hibernate-cache.regions.owners.maximum-size=20",
+        "customers.hibernate-cache.regions.owners.expire-after-write=1m").applyTo(context);
+
+      context.publishEvent(new EnvironmentChangeEvent(context, Set.of(
+        "customers.hibernate-cache.regions.owners.maximum-size",
+        "customers.hibernate-cache.regions.owners.expire-after-write")));
+
+      assertThat(maximumSize(context, "owners")).isEqualTo(20);
+      assertThat(expireAfterWrite(context, "owners")).hasValue(Duration.ofMinutes(1));
+      assertThat(maximumSize(context, "pet-types")).isEqualTo(10);
+    });
+  }
+
+  @Test
+  void ignoresChangesOutsideTheRegions() {
+    runner.run(context -> {
+      TestPropertyValues.of("customers.hibernate-cache.regions.owners.maximum-size=20").applyTo(context);
+
+      context.publishEvent(new EnvironmentChangeEvent(context, Set.of("logging.level.root")));
+
+      assertThat(maximumSize(context, "owners")).isEqualTo(100);
+    });
+  }
+
+  @Test
+  void contextsRunningTogetherHaveTheirOwnRegions() {
+    runner.run(first -> runner.run(second -> {
+      assertThat(second).hasNotFailed();
+      assertThat(second.getBean(CacheManager.class)).isNotSameAs(first.getBean(CacheManager.class));
+    }));
+  }
+
+  private static long maximumSize(ApplicationContext context, String region) {
+    return caffeine(context, region).policy().eviction().map(Policy.Eviction::getMaximum).orElseThrow();
+  }
+
+  private static Optional<Duration> expireAfterWrite(ApplicationContext context, String region) {
+    return caffeine(context, region).policy().expireAfterWrite().map(Policy.FixedExpiration::getExpiresAfter);
+  }
+
+  private static Cache<?, ?> caffeine(ApplicationContext context, String region) {
+    return context.getBean(CacheManager.class).getCache(region).unwrap(Cache.class);
+  }
+}
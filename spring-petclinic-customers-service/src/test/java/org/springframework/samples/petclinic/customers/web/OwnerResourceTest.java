@@ -0,0 +1,94 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Limit;
+import org.springframework.samples.petclinic.customers.model.CustomersReadRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerRepository;
+import org.springframework.samples.petclinic.customers.model.OwnerSummary;
+import org.springframework.samples.petclinic.customers.model.OwnerView;
+import org.springframework.samples.petclinic.customers.model.PetSummary;
+import org.springframework.samples.petclinic.customers.model.PetTypeView;
+import org.springframework.samples.petclinic.customers.model.PetView;
+import org.springframework.samples.petclinic.customers.web.mapper.OwnerEntityMapper;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(OwnerResource.class)
+@ActiveProfiles("test")
+class OwnerResourceTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    OwnerRepository ownerRepository;
+
+    @MockBean
+    CustomersReadRepository readRepository;
+
+    @MockBean
+    OwnerEntityMapper ownerEntityMapper;
+
+    @Test
+    void shouldPageOwnersByLastNamePrefix() throws Exception {
+        given(ownerRepository.findSummaries(eq("Da%"), any(Limit.class)))
+            .willReturn(List.of(
+                new OwnerSummary(2, "Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749"),
+                new OwnerSummary(4, "Harold", "Davis", "563 Friendly St.", "Windsor", "6085553198"),
+                new OwnerSummary(9, "David", "Dawson", "2387 S. Fair Way", "Madison", "6085552765")));
+        given(ownerRepository.findPetSummaries(List.of(2, 4)))
+            .willReturn(List.of(new PetSummary(2, 2, "Basil"), new PetSummary(4, 5, "George")));
+        given(ownerRepository.findSummariesAfter(eq("Da%"), eq("Davis"), eq(4), any(Limit.class)))
+            .willReturn(List.of(
+                new OwnerSummary(9, "David", "Dawson", "2387 S. Fair Way", "Madison", "6085552765")));
+
+        String next = mvc.perform(get("/owners?size=2&lastName=Da"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items.length()").value(2))
+            .andExpect(jsonPath("$.items[0].id").value(2))
+            .andExpect(jsonPath("$.items[0].pets[0].name").value("Basil"))
+            .andExpect(jsonPath("$.items[0].pets[0].ownerId").doesNotExist())
+            .andExpect(jsonPath("$.items[1].id").value(4))
+            .andExpect(jsonPath("$.items[1].pets[0].name").value("George"))
+            .andExpect(jsonPath("$.next").isString())
+            .andReturn().getResponse().getContentAsString()
+            .replaceAll(".*\"next\":\"([^\"]+)\".*", "$1");
+
+        mvc.perform(get("/owners?size=2&lastName=Da&after=" + next))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id").value(9))
+            .andExpect(jsonPath("$.items[0].pets.length()").value(0))
+            .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void shouldReadABatchOfOwnersInOneLookup() throws Exception {
+        given(readRepository.findOwners(List.of(1, 6)))
+            .willReturn(List.of(
+                new OwnerView(1, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023",
+                    List.of(new PetView(1, "Leo", null, new PetTypeView(1, "cat")))),
+                new OwnerView(6, "Jean", "Coleman", "105 N. Lake St.", "Monona", "6085552654", List.of())));
+
+        mvc.perform(get("/owners?ownerId=1,6"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].lastName").value("Franklin"))
+            .andExpect(jsonPath("$[0].pets[0].type.name").value("cat"))
+            .andExpect(jsonPath("$[1].id").value(6));
+    }
+}
@@ -8,11 +8,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
-import org.springframework.samples.petclinic.customers.model.Owner;
+import org.springframework.samples.petclinic.customers.model.CustomersReadRepository;
+import org.springframework.samples.petclinic.customers.model.CustomersReadRepository.OwnedPet;
 import org.springframework.samples.petclinic.customers.model.OwnerRepository;
-import org.springframework.samples.petclinic.customers.model.Pet;
 import org.springframework.samples.petclinic.customers.model.PetRepository;
-import org.springframework.samples.petclinic.customers.model.PetType;
+import org.springframework.samples.petclinic.customers.model.PetTypeView;
+import org.springframework.samples.petclinic.customers.model.PetView;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
@@ -41,12 +42,15 @@ class PetResourceTest {
     @MockBean
     OwnerRepository ownerRepository;
 
+    @MockBean
+    CustomersReadRepository readRepository;
+
     @Test
     void shouldGetAPetInJSonFormat() throws Exception {
 
-        Pet pet = setupPet();
+        OwnedPet pet = setupPet();
 
-        given(petRepository.findById(2)).willReturn(Optional.of(pet));
+        given(readRepository.findPet(2)).willReturn(Optional.of(pet));
 
 
         mvc.perform(get("/owners/2/pets/2").accept(MediaType.APPLICATION_JSON))
@@ -57,21 +61,7 @@ class PetResourceTest {
             .andExpect(jsonPath("$.type.id").value(6));
     }
 
-    private Pet setupPet() {
-        Owner owner = new Owner();
-        owner.setFirstName("George");
-        owner.setLastName("Bush");
-
-        Pet pet = new Pet();
-
-        pet.setName("Basil");
-        pet.setId(2);
-
-        PetType petType = new PetType();
-        petType.setId(6);
-        pet.setType(petType);
-
-        owner.addPet(pet);
-        return pet;
+    private OwnedPet setupPet() {
+        return new OwnedPet(new PetView(2, "Basil", null, new PetTypeView(6, "hamster")), "George", "Bush");
     }
 }
@@ -0,0 +1,114 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements run by the read endpoints against the sample data.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadStatementCountTest {
+
+    private static final AtomicInteger statements = new AtomicInteger();
+
+    @Autowired
+    MockMvc mvc;
+
+    @BeforeEach
+    void resetCount() {
+        statements.set(0);
+    }
+
+    @Test
+    void ownerWithPetsIsReadWithOneStatement() throws Exception {
+        perform("/owners/3")
+            .andExpect(jsonPath("$.pets.length()").value(2))
+            .andExpect(jsonPath("$.pets[0].name").value("Jewel"))
+            .andExpect(jsonPath("$.pets[0].type.name").value("dog"))
+            .andExpect(jsonPath("$.pets[1].name").value("Rosy"));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void allOwnersAreReadWithOneStatement() throws Exception {
+        perform("/owners")
+            .andExpect(jsonPath("$.length()").value(10))
+            .andExpect(jsonPath("$[5].pets[0].name").value("Max"));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void batchOfOwnersIsReadWithOneStatement() throws Exception {
+        perform("/owners?ownerId=1,6")
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[1].pets.length()").value(2));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void petIsReadWithOneStatement() throws Exception {
+        perform("/owners/1/pets/1")
+            .andExpect(jsonPath("$.owner").value("George Franklin"))
+            .andExpect(jsonPath("$.type.name").value("cat"));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void petTypesAreServedFromTheQueryCache() throws Exception {
+        perform("/petTypes");
+        statements.set(0);
+        perform("/petTypes")
+            .andExpect(jsonPath("$[0].name").value("bird"));
+        assertEquals(0, statements.get());
+    }
+
+    @Test
+    void ownerListPageIsReadWithTwoStatements() throws Exception {
+        perform("/owners?size=3")
+            .andExpect(jsonPath("$.items.length()").value(3));
+        assertEquals(2, statements.get());
+    }
+
+    private ResultActions perform(String url) throws Exception {
+        return mvc.perform(get(url)).andExpect(status().isOk());
+    }
+
+    @TestConfiguration
+    static class StatementCounting {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return ProxyDataSourceBuilder.create(dataSource)
+                            .afterQuery((execution, queries) -> statements.addAndGet(queries.size()))
+                            .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
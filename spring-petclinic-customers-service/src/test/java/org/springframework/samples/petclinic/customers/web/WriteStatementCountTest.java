@@ -0,0 +1,109 @@
+package org.springframework.samples.petclinic.customers.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements run by the write endpoints once the owner, its pets and the pet type are in the
+ * second-level cache: only the insert or update itself should reach the database.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class WriteStatementCountTest {
+
+    private static final AtomicInteger statements = new AtomicInteger();
+
+    @Autowired
+    MockMvc mvc;
+
+    @BeforeEach
+    void resetCount() {
+        statements.set(0);
+    }
+
+    @Test
+    void ownerUpdateIsOneStatement() throws Exception {
+        perform(put("/owners/4"), owner("Harold", "Davis", "563 Friendly St.", "Windsor", "6085553198"));
+        statements.set(0);
+
+        perform(put("/owners/4"), owner("Harold", "Davis", "563 Friendly St.", "Windsor", "6085550000"));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void petCreationIsOneStatement() throws Exception {
+        perform(put("/owners/2"), owner("Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749"));
+        perform(post("/owners/9/pets"), pet(0, "Nibbles", 6));
+        statements.set(0);
+
+        perform(post("/owners/2/pets"), pet(0, "Nemo", 6));
+        assertEquals(1, statements.get());
+    }
+
+    @Test
+    void petUpdateIsOneStatement() throws Exception {
+        perform(put("/owners/6"), owner("Jean", "Coleman", "105 N. Lake St.", "Monona", "6085552654"));
+        perform(post("/owners/10/pets"), pet(0, "Tom", 1));
+        statements.set(0);
+
+        perform(put("/owners/6/pets/7"), pet(7, "Sam", 1));
+        assertEquals(1, statements.get());
+    }
+
+    private ResultActions perform(MockHttpServletRequestBuilder request, String json) throws Exception {
+        return mvc.perform(request.contentType(MediaType.APPLICATION_JSON).content(json))
+            .andExpect(status().is2xxSuccessful());
+    }
+
+    private static String owner(String firstName, String lastName, String address, String city, String telephone) {
+        return """
+            {"firstName": "%s", "lastName": "%s", "address": "%s", "city": "%s", "telephone": "%s"}
+            """.formatted(firstName, lastName, address, city, telephone);
+    }
+
+    private static String pet(int id, String name, int typeId) {
+        return """
+            {"id": %d, "name": "%s", "birthDate": "2020-05-04", "typeId": %d}
+            """.formatted(id, name, typeId);
+    }
+
+    @TestConfiguration
+    static class StatementCounting {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return ProxyDataSourceBuilder.create(dataSource)
+                            .afterQuery((execution, queries) -> statements.addAndGet(queries.size()))
+                            .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
  * A Configuration class for beans used by the Chat Client.
@@ -33,4 +34,21 @@ public class AIBeanConfiguration {
     public WebClient.Builder loadBalancedWebClientBuilder() {
         return WebClient.builder();
     }
+
+	/**
+	 * Dedicated pool for the calls to customers-service, publishing the
+	 * {@code reactor.netty.connection.provider.*} metrics to Micrometer.
+	 */
+	@Bean(destroyMethod = "dispose")
+	ConnectionProvider customersConnectionProvider(CustomersClientProperties properties) {
+		return ConnectionProvider.builder("customers-service")
+			.maxConnections(properties.maxConnections())
+			.pendingAcquireMaxCount(properties.pendingAcquireMaxCount())
+			.pendingAcquireTimeout(properties.pendingAcquireTimeout())
+			.maxIdleTime(properties.maxIdleTime())
+			.maxLifeTime(properties.maxLifeTime())
+			.evictInBackground(properties.evictInBackground())
+			.metrics(true)
+			.build();
+	}
 }
@@ -6,6 +6,7 @@ import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.samples.petclinic.genai.dto.OwnerDetails;
 import org.springframework.samples.petclinic.genai.dto.PetDetails;
 import org.springframework.stereotype.Service;
@@ -14,6 +15,10 @@ import org.springframework.web.reactive.function.client.WebClient;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
 /**
  * Functions that are invoked by the LLM will use this bean to query the system of record
  * for information such as listing owners and vets, or adding pets to an owner.
@@ -29,8 +34,15 @@ public class AIDataProvider {
     private final WebClient webClient;
 
 
-	public AIDataProvider(WebClient.Builder webClientBuilder, VectorStore vectorStore) {
-		this.webClient = webClientBuilder.build();
+	public AIDataProvider(WebClient.Builder webClientBuilder, ConnectionProvider customersConnectionProvider,
+			CustomersClientProperties customersClientProperties, VectorStore vectorStore) {
+		HttpClient httpClient = HttpClient.create(customersConnectionProvider)
+			.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) customersClientProperties.connectTimeout().toMillis())
+			.option(ChannelOption.SO_KEEPALIVE, true)
+			.keepAlive(true);
+		this.webClient = webClientBuilder.clone()
+			.clientConnector(new ReactorClientHttpConnector(httpClient))
+			.build();
 		this.vectorStore = vectorStore;
 	}
 
@@ -0,0 +1,20 @@
+package org.springframework.samples.petclinic.genai;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Connection pool settings of the {@link AIDataProvider} client to customers-service.
+ */
+@ConfigurationProperties(prefix = "genai.customers-client.pool")
+public record CustomersClientProperties(
+		@DefaultValue("50") int maxConnections,
+		@DefaultValue("100") int pendingAcquireMaxCount,
+		@DefaultValue("5s") Duration pendingAcquireTimeout,
+		@DefaultValue("30s") Duration maxIdleTime,
+		@DefaultValue("5m") Duration maxLifeTime,
+		@DefaultValue("30s") Duration evictInBackground,
+		@DefaultValue("2s") Duration connectTimeout) {
+}
@@ -18,12 +18,15 @@ package org.springframework.samples.petclinic.visits;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.web.BinaryJsonConfig;
 
 /**
  * @author Maciej Szarlinski
  */
 @EnableDiscoveryClient
 @SpringBootApplication
+@Import(BinaryJsonConfig.class)
 public class VisitsServiceApplication {
 
     public static void main(String[] args) {
@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.visits.model;
 import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 /**
@@ -35,4 +36,9 @@ public interface VisitRepository extends JpaRepository<Visit, Integer> {
     List<Visit> findByPetId(int petId);
 
     List<Visit> findByPetIdIn(Collection<Integer> petIds);
+
+    /**
+     * Visits of the pets with an id greater than the given one, in id order, for reading them page by page.
+     */
+    List<Visit> findByPetIdInAndIdGreaterThanOrderById(Collection<Integer> petIds, int id, Limit limit);
 }
@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.visits.web;
 
+import java.util.Comparator;
 import java.util.List;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
@@ -69,10 +70,16 @@ class VisitResource {
         return visitRepository.findByPetId(petId);
     }
 
+    /**
+     * Visits grouped by pet, in the order of {@code petId}, which the API Gateway relies on to write them as they
+     * arrive.
+     */
     @GetMapping("pets/visits")
     public Visits read(@RequestParam("petId") List<Integer> petIds) {
         final List<Visit> byPetIdIn = visitRepository.findByPetIdIn(petIds);
-        return new Visits(byPetIdIn);
+        return new Visits(byPetIdIn.stream()
+            .sorted(Comparator.comparingInt(visit -> petIds.indexOf(visit.getPetId())))
+            .toList());
     }
 
     record Visits(
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.visits.web;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * RSocket counterpart of {@code GET pets/visits}, served on {@code spring.rsocket.server.port} next to the
+ * HTTP endpoints of {@link VisitResource}.
+ * <p>
+ * A request-stream on {@code pets.visits} with the pet ids as data answers with the visits of these pets in id
+ * order. They are read from the database {@value #PAGE_SIZE} at a time as the requester asks for more: a page is
+ * queried once the previous one has been handed to the stream, and the next one only once that page has been
+ * requested, so a requester that stops asking stops the queries. The queries run off the RSocket event loop.
+ */
+@Controller
+class VisitStreamController {
+
+    static final int PAGE_SIZE = 64;
+
+    private final VisitRepository visitRepository;
+
+    VisitStreamController(VisitRepository visitRepository) {
+        this.visitRepository = visitRepository;
+    }
+
+    @MessageMapping("pets.visits")
+    public Flux<Visit> read(@Payload List<Integer> petIds) {
+        return page(petIds, 0)
+            .expand(page -> page.size() < PAGE_SIZE ? Mono.empty() : page(petIds, page.get(page.size() - 1).getId()))
+            .concatMapIterable(page -> page, 1);
+    }
+
+    private Mono<List<Visit>> page(List<Integer> petIds, int afterId) {
+        return Mono.fromCallable(() ->
+                visitRepository.findByPetIdInAndIdGreaterThanOrderById(petIds, afterId, Limit.of(PAGE_SIZE)))
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+}
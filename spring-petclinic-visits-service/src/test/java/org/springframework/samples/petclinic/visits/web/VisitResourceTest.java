@@ -58,4 +58,36 @@ class VisitResourceTest {
             .andExpect(jsonPath("$.items[1].petId").value(222))
             .andExpect(jsonPath("$.items[2].petId").value(222));
     }
+
+    @Test
+    void shouldGroupVisitsByPetInTheRequestedOrder() throws Exception {
+        given(visitRepository.findByPetIdIn(asList(222, 111)))
+            .willReturn(
+                asList(
+                    Visit.VisitBuilder.aVisit()
+                        .id(1)
+                        .petId(111)
+                        .build(),
+                    Visit.VisitBuilder.aVisit()
+                        .id(2)
+                        .petId(222)
+                        .build(),
+                    Visit.VisitBuilder.aVisit()
+                        .id(3)
+                        .petId(111)
+                        .build(),
+                    Visit.VisitBuilder.aVisit()
+                        .id(4)
+                        .petId(222)
+                        .build()
+                )
+            );
+
+        mvc.perform(get("/pets/visits?petId=222,111"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id").value(2))
+            .andExpect(jsonPath("$.items[1].id").value(4))
+            .andExpect(jsonPath("$.items[2].id").value(1))
+            .andExpect(jsonPath("$.items[3].id").value(3));
+    }
 }
@@ -0,0 +1,108 @@
+package org.springframework.samples.petclinic.visits.web;
+
+import io.rsocket.core.RSocketServer;
+import io.rsocket.transport.netty.server.CloseableChannel;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+import org.springframework.samples.petclinic.visits.model.Visit;
+import org.springframework.samples.petclinic.visits.model.VisitRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VisitStreamControllerTest {
+
+    private static final List<Integer> PET_IDS = List.of(1, 2);
+
+    private final VisitRepository visitRepository = mock(VisitRepository.class);
+
+    private CloseableChannel server;
+
+    private RSocketRequester requester;
+
+    @BeforeEach
+    void setUp() {
+        RSocketStrategies strategies = RSocketStrategies.builder()
+            .encoder(new Jackson2CborEncoder())
+            .decoder(new Jackson2CborDecoder())
+            .build();
+        RSocketMessageHandler handler = new RSocketMessageHandler();
+        handler.setRSocketStrategies(strategies);
+        handler.setHandlers(List.of(new VisitStreamController(visitRepository)));
+        handler.afterPropertiesSet();
+        server = RSocketServer.create(handler.responder())
+            .bind(TcpServerTransport.create("localhost", 0))
+            .block();
+        requester = RSocketRequester.builder()
+            .rsocketStrategies(strategies)
+            .dataMimeType(MediaType.APPLICATION_CBOR)
+            .tcp("localhost", server.address().getPort());
+
+        given(visitRepository.findByPetIdInAndIdGreaterThanOrderById(eq(PET_IDS), eq(0), any()))
+            .willReturn(visits(1, VisitStreamController.PAGE_SIZE));
+        given(visitRepository.findByPetIdInAndIdGreaterThanOrderById(eq(PET_IDS), eq(64), any()))
+            .willReturn(visits(65, VisitStreamController.PAGE_SIZE));
+        given(visitRepository.findByPetIdInAndIdGreaterThanOrderById(eq(PET_IDS), eq(128), any()))
+            .willReturn(visits(129, 10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        requester.dispose();
+        server.dispose();
+    }
+
+    @Test
+    void streamsTheVisitsPageByPage() {
+        List<Visit> visits = requester.route("pets.visits")
+            .data(PET_IDS)
+            .retrieveFlux(Visit.class)
+            .collectList()
+            .block();
+
+        assertThat(visits).extracting(Visit::getId).hasSize(138).isSorted();
+        verify(visitRepository, times(3)).findByPetIdInAndIdGreaterThanOrderById(eq(PET_IDS), anyInt(), any());
+    }
+
+    @Test
+    void queriesNoPageBeyondTheOneAfterTheRequestedVisits() {
+        List<Visit> visits = requester.route("pets.visits")
+            .data(PET_IDS)
+            .retrieveFlux(Visit.class)
+            .take(5)
+            .collectList()
+            .block();
+
+        assertThat(visits).extracting(Visit::getId).containsExactly(1, 2, 3, 4, 5);
+        verify(visitRepository, never()).findByPetIdInAndIdGreaterThanOrderById(eq(PET_IDS), eq(128), any());
+    }
+
+    private static List<Visit> visits(int firstId, int count) {
+        List<Visit> visits = new ArrayList<>();
+        for (int id = firstId; id < firstId + count; id++) {
+            visits.add(Visit.VisitBuilder.aVisit()
+                .id(id)
+                .petId(1 + id % 2)
+                .build());
+        }
+        return visits;
+    }
+}
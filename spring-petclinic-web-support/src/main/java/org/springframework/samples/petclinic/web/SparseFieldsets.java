@@ -0,0 +1,133 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.web;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.util.StringUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@code fields} query parameter support: {@code ?fields=firstName,lastName,pets.name} restricts a response to
+ * the listed JSON properties, nested ones being addressed by their dotted path. Selecting an object keeps all of
+ * its properties.
+ * <p>
+ * Properties are skipped by a Jackson {@link com.fasterxml.jackson.databind.ser.PropertyFilter} while the
+ * response is written, so nothing but the output shrinks. It applies to the types passed to {@link #module},
+ * which the web configuration registers on its {@code ObjectMapper} together with {@link #serializeAll()}, so
+ * that they are written in full without a selection. The types themselves carry no annotation, and other
+ * mappers write them as usual.
+ */
+public final class SparseFieldsets {
+
+    public static final String FILTER_ID = "fields";
+
+    private SparseFieldsets() {
+    }
+
+    /**
+     * @param types the types whose properties can be selected
+     */
+    public static Module module(Class<?>... types) {
+        SimpleModule module = new SimpleModule("SparseFieldsets");
+        for (Class<?> type : types) {
+            module.setMixInAnnotation(type, Selectable.class);
+        }
+        return module;
+    }
+
+    public static FilterProvider serializeAll() {
+        return new SimpleFilterProvider().addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    /**
+     * @param fields comma-separated property paths, all properties when empty
+     */
+    public static MappingJacksonValue select(Object value, String fields) {
+        MappingJacksonValue json = new MappingJacksonValue(value);
+        if (StringUtils.hasText(fields)) {
+            json.setFilters(new SimpleFilterProvider().addFilter(FILTER_ID, new FieldsFilter(fields)));
+        }
+        return json;
+    }
+
+    @JsonFilter(FILTER_ID)
+    private interface Selectable {
+    }
+
+    static class FieldsFilter extends SimpleBeanPropertyFilter {
+
+        private final Set<String> selected = new HashSet<>();
+
+        private final Set<String> ancestors = new HashSet<>();
+
+        FieldsFilter(String fields) {
+            for (String field : StringUtils.commaDelimitedListToStringArray(fields)) {
+                String path = field.trim();
+                selected.add(path);
+                for (int dot = path.indexOf('.'); dot > 0; dot = path.indexOf('.', dot + 1)) {
+                    ancestors.add(path.substring(0, dot));
+                }
+            }
+        }
+
+        @Override
+        public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+            if (includes(path(gen.getOutputContext(), writer.getName()))) {
+                writer.serializeAsField(pojo, gen, provider);
+            } else if (!gen.canOmitFields()) {
+                writer.serializeAsOmittedField(pojo, gen, provider);
+            }
+        }
+
+        private boolean includes(String path) {
+            if (selected.contains(path) || ancestors.contains(path)) {
+                return true;
+            }
+            for (int dot = path.indexOf('.'); dot > 0; dot = path.indexOf('.', dot + 1)) {
+                if (selected.contains(path.substring(0, dot))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The context of the object being written holds the name of its previous property, so the path is built
+         * from the names its enclosing objects are written under, array elements adding no segment.
+         */
+        private static String path(JsonStreamContext context, String name) {
+            StringBuilder path = new StringBuilder(name);
+            for (JsonStreamContext parent = context.getParent(); parent != null; parent = parent.getParent()) {
+                if (parent.inObject() && parent.getCurrentName() != null) {
+                    path.insert(0, '.').insert(0, parent.getCurrentName());
+                }
+            }
+            return path.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.springframework.samples.petclinic.web;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryJsonConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+        .withUserConfiguration(BinaryJsonConfig.class)
+        .withPropertyValues("spring.jackson.default-property-inclusion=non_null");
+
+    @Test
+    void smileAndCborMappersGetTheSpringBootJacksonSettings() {
+        contextRunner.run(context -> {
+            ObjectMapper smile = context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+            ObjectMapper cbor = context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+
+            assertThat(smile.getFactory()).isInstanceOf(SmileFactory.class);
+            assertThat(cbor.getFactory()).isInstanceOf(CBORFactory.class);
+            assertThat(smile.getSerializationConfig().getDefaultPropertyInclusion().getValueInclusion())
+                .isEqualTo(JsonInclude.Include.NON_NULL);
+            assertThat(cbor.getSerializationConfig().getDefaultPropertyInclusion().getValueInclusion())
+                .isEqualTo(JsonInclude.Include.NON_NULL);
+        });
+    }
+
+    @Test
+    void jsonMapperKeepsItsFactory() {
+        contextRunner.run(context -> assertThat(context.getBean(ObjectMapper.class).getFactory())
+            .isNotInstanceOfAny(SmileFactory.class, CBORFactory.class));
+    }
+}
@@ -0,0 +1,54 @@
+package org.springframework.samples.petclinic.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SparseFieldsetsTest {
+
+    record Owner(int id, String lastName, String city, List<Pet> pets) {
+    }
+
+    record Pet(int id, String name) {
+    }
+
+    private final Owner owner = new Owner(1, "Davis", "Madison", List.of(new Pet(7, "Leo"), new Pet(8, "Max")));
+
+    private final ObjectMapper mapper = new ObjectMapper()
+        .registerModule(SparseFieldsets.module(Owner.class, Pet.class))
+        .setFilterProvider(SparseFieldsets.serializeAll());
+
+    @Test
+    void writesEverythingWithoutSelection() throws Exception {
+        assertThat(write(SparseFieldsets.select(owner, ""))).isEqualTo(
+            "{\"id\":1,\"lastName\":\"Davis\",\"city\":\"Madison\",\"pets\":[{\"id\":7,\"name\":\"Leo\"},{\"id\":8,\"name\":\"Max\"}]}");
+    }
+
+    @Test
+    void writesOnlyTheSelectedPaths() throws Exception {
+        assertThat(write(SparseFieldsets.select(owner, "lastName, pets.name"))).isEqualTo(
+            "{\"lastName\":\"Davis\",\"pets\":[{\"name\":\"Leo\"},{\"name\":\"Max\"}]}");
+    }
+
+    @Test
+    void selectingAnObjectWritesAllItsProperties() throws Exception {
+        assertThat(write(SparseFieldsets.select(owner, "id,pets"))).isEqualTo(
+            "{\"id\":1,\"pets\":[{\"id\":7,\"name\":\"Leo\"},{\"id\":8,\"name\":\"Max\"}]}");
+    }
+
+    @Test
+    void mappersWithoutTheModuleNeedNoFilterProvider() throws Exception {
+        assertThat(new ObjectMapper().writeValueAsString(owner)).isEqualTo(
+            "{\"id\":1,\"lastName\":\"Davis\",\"city\":\"Madison\",\"pets\":[{\"id\":7,\"name\":\"Leo\"},{\"id\":8,\"name\":\"Max\"}]}");
+    }
+
+    private String write(MappingJacksonValue json) throws Exception {
+        return json.getFilters() == null
+            ? mapper.writeValueAsString(json.getValue())
+            : mapper.writer(json.getFilters()).writeValueAsString(json.getValue());
+    }
+}